@@ -0,0 +1,231 @@
+package PegGamee;
+
+/**
+ * Generates the legal moves of many independent boards at once. The boards share one
+ * square geometry of at most 64 cells and are held as a structure of arrays: a long[]
+ * with one packed board per element, bit (row * cols + col) set for each peg, as in
+ * BitBoard. The result is one long[] per direction, holding for each board the cells a
+ * peg can jump from in that direction.
+ *
+ * The masks are computed with the Vector API, several boards per instruction, when the
+ * jdk.incubator.vector module is present (java --add-modules jdk.incubator.vector), and
+ * with plain long arithmetic otherwise. Start with -Dpeggame.vector=false to force the
+ * scalar path. VectorMoveKernel is loaded by name, so only that class is compiled against
+ * the incubator module.
+ */
+public final class BatchMoveGenerator {
+
+    private static final int RIGHT = PackedMove.RIGHT;
+    private static final int LEFT = PackedMove.LEFT;
+    private static final int DOWN = PackedMove.DOWN;
+    private static final int UP = PackedMove.UP;
+
+    static final boolean VECTOR_AVAILABLE = !"false".equals(System.getProperty("peggame.vector"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final int rows;
+    private final int cols;
+    private final Kernel kernel;
+    private final boolean vectorized;
+
+    /**
+     * Computes the per direction move masks of a range of boards.
+     */
+    interface Kernel {
+        void generate(long[] pegs, int from, int to, long[][] movers);
+    }
+
+    /**
+     * Constructs a generator for boards of the given size, vectorized if the Vector API is available.
+     *
+     * @param rows The number of rows of every board.
+     * @param cols The number of columns of every board.
+     */
+    public BatchMoveGenerator(int rows, int cols) {
+        this(rows, cols, true);
+    }
+
+    /**
+     * Constructs a generator for boards of the given size.
+     *
+     * @param rows      The number of rows of every board.
+     * @param cols      The number of columns of every board.
+     * @param vectorize False to always use the scalar path, for example to compare against it.
+     */
+    public BatchMoveGenerator(int rows, int cols, boolean vectorize) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Long.SIZE) {
+            throw new IllegalArgumentException("Batched boards need 1 to 64 cells, not " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        long onBoard = rows * cols == Long.SIZE ? -1L : (1L << rows * cols) - 1;
+        long[] launch = new long[4];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                long bit = 1L << (row * cols + col);
+                if (col + 2 < cols)
+                    launch[RIGHT] |= bit;
+                if (col - 2 >= 0)
+                    launch[LEFT] |= bit;
+                if (row + 2 < rows)
+                    launch[DOWN] |= bit;
+                if (row - 2 >= 0)
+                    launch[UP] |= bit;
+            }
+        }
+        int[] steps = { 1, -1, cols, -cols };
+        Kernel vector = vectorize ? vectorKernel(onBoard, launch, steps) : null;
+        this.kernel = vector != null ? vector : new ScalarKernel(onBoard, launch, steps);
+        this.vectorized = vector != null;
+    }
+
+    private static Kernel vectorKernel(long onBoard, long[] launch, int[] steps) {
+        if (!VECTOR_AVAILABLE) {
+            return null;
+        }
+        try {
+            return (Kernel) Class.forName("PegGamee.VectorMoveKernel")
+                    .getDeclaredConstructor(long.class, long[].class, int[].class)
+                    .newInstance(onBoard, launch, steps);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The module is there but cannot be used on this JVM, or the kernel was not built
+            return null;
+        }
+    }
+
+    /**
+     * @return True if this generator uses the Vector API.
+     */
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Packs a board into a long, bit (row * cols + col) set for each peg.
+     *
+     * @param board The board, where true indicates a peg, of this generator's size.
+     * @return The packed board.
+     */
+    public long pack(boolean[][] board) {
+        long pegs = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (board[row][col])
+                    pegs |= 1L << (row * cols + col);
+            }
+        }
+        return pegs;
+    }
+
+    /**
+     * Allocates move masks for a batch of boards.
+     *
+     * @param capacity The largest number of boards the masks will be computed for.
+     * @return One array per direction, indexed by PackedMove.RIGHT to PackedMove.UP.
+     */
+    public static long[][] newMovers(int capacity) {
+        return new long[4][capacity];
+    }
+
+    /**
+     * Computes the move masks of the first count boards of a batch. Nothing is allocated.
+     *
+     * @param pegs   The packed boards.
+     * @param count  The number of boards to compute, from the start of the batch.
+     * @param movers Filled with, per direction and per board, the cells a peg can jump from.
+     */
+    public void generate(long[] pegs, int count, long[][] movers) {
+        generate(pegs, 0, count, movers);
+    }
+
+    /**
+     * Computes the move masks of a range of boards of a batch. Nothing is allocated.
+     *
+     * @param pegs   The packed boards.
+     * @param from   The first board to compute.
+     * @param to     One past the last board to compute.
+     * @param movers Filled with, per direction and per board, the cells a peg can jump from.
+     */
+    public void generate(long[] pegs, int from, int to, long[][] movers) {
+        if (from < 0 || to > pegs.length || from > to) {
+            throw new IndexOutOfBoundsException("Boards " + from + " to " + to + " of " + pegs.length);
+        }
+        kernel.generate(pegs, from, to, movers);
+    }
+
+    /**
+     * @param movers The masks computed by generate.
+     * @param board  The index of a board in the batch.
+     * @return The number of legal moves on that board.
+     */
+    public static int getMoveCount(long[][] movers, int board) {
+        return Long.bitCount(movers[RIGHT][board]) + Long.bitCount(movers[LEFT][board])
+                + Long.bitCount(movers[DOWN][board]) + Long.bitCount(movers[UP][board]);
+    }
+
+    /**
+     * Writes the legal moves of one board of a batch into the given array, packed as
+     * described in PackedMove, in the same order as SqrBoard.getPossibleMoves().
+     *
+     * @param movers The masks computed by generate.
+     * @param board  The index of a board in the batch.
+     * @param moves  The array to fill, large enough for every legal move.
+     * @return The number of moves written.
+     */
+    public static int getPossibleMoves(long[][] movers, int board, int[] moves) {
+        int count = 0;
+        long any = movers[RIGHT][board] | movers[LEFT][board] | movers[DOWN][board] | movers[UP][board];
+        while (any != 0) {
+            int bit = Long.numberOfTrailingZeros(any);
+            any &= any - 1;
+            for (int dir = RIGHT; dir <= UP; dir++) {
+                if ((movers[dir][board] >>> bit & 1) != 0)
+                    moves[count++] = PackedMove.encode(bit, dir);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One board at a time, the same shift-and-mask steps as BitBoard on a single word.
+     */
+    static final class ScalarKernel implements Kernel {
+        private final long onBoard;
+        private final long[] launch;
+        private final int[] steps;
+
+        ScalarKernel(long onBoard, long[] launch, int[] steps) {
+            this.onBoard = onBoard;
+            this.launch = launch;
+            this.steps = steps;
+        }
+
+        @Override
+        public void generate(long[] pegs, int from, int to, long[][] movers) {
+            generateScalar(onBoard, launch, steps, pegs, from, to, movers);
+        }
+    }
+
+    static void generateScalar(long onBoard, long[] launch, int[] steps, long[] pegs, int from, int to, long[][] movers) {
+        for (int dir = RIGHT; dir <= UP; dir++) {
+            int step = steps[dir];
+            long mask = launch[dir];
+            long[] out = movers[dir];
+            for (int i = from; i < to; i++) {
+                long p = pegs[i];
+                long e = ~p & onBoard;
+                long mid = step > 0 ? p >>> step : p << -step;
+                long land = step > 0 ? e >>> (2 * step) : e << (-2 * step);
+                out[i] = p & mid & land & mask;
+            }
+        }
+    }
+}
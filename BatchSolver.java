@@ -0,0 +1,236 @@
+package PegGamee;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless batch solver for a directory of board files in any format FileUtil can load.
+ *
+ * Files are listed lazily and handed to a fixed pool of workers. At most twice as many
+ * files as there are workers are in flight at once; listing waits for a free slot, so
+ * memory use does not depend on the number of files. Each worker loads its file and
+ * solves it with a PegSolver shared by all workers, for at most the time limit per file.
+ * One result line per file is written as soon as it is done, as CSV or JSON Lines
+ * depending on the output file's extension. A file that runs out of time gets the error
+ * "timeout", and a file that fails in any other way, even with an Error such as running
+ * out of memory, gets the error message, so every file has a line.
+ *
+ * Usage: {@code java PegGamee.BatchSolver <board directory> <output.csv|output.jsonl> [workers] [seconds per file]}
+ */
+public class BatchSolver {
+
+    private static final long DEFAULT_TIME_LIMIT_SECONDS = 60;
+    static final String TIMEOUT = "timeout";
+
+    private final PegSolver solver;
+    private final int workers;
+    private final long timeLimitNanos;
+
+    /**
+     * Constructs a batch solver that gives each file a minute.
+     *
+     * @param solver  The solver shared by every worker.
+     * @param workers The number of files loaded and solved at the same time.
+     */
+    public BatchSolver(PegSolver solver, int workers) {
+        this(solver, workers, DEFAULT_TIME_LIMIT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs a batch solver.
+     *
+     * @param solver    The solver shared by every worker.
+     * @param workers   The number of files loaded and solved at the same time.
+     * @param timeLimit How long the search of one file may run before it is recorded as a timeout.
+     * @param unit      The unit of the time limit.
+     */
+    public BatchSolver(PegSolver solver, int workers, long timeLimit, TimeUnit unit) {
+        this.solver = solver;
+        this.workers = workers;
+        this.timeLimitNanos = unit.toNanos(timeLimit);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchSolver <board directory> <output.csv|output.jsonl> [workers] [seconds per file]");
+            System.exit(2);
+        }
+        EngineMetrics.register();
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_TIME_LIMIT_SECONDS;
+        Path output = Paths.get(args[1]);
+        boolean json = output.getFileName().toString().endsWith(".jsonl");
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            long processed = new BatchSolver(new PegSolver(), workers, seconds, TimeUnit.SECONDS).run(Paths.get(args[0]), out, json);
+            System.err.println("Processed " + processed + " board files");
+        }
+    }
+
+    /**
+     * Solves every regular file in a directory.
+     *
+     * @param directory The directory holding the board files.
+     * @param out       Where the result lines are written.
+     * @param json      True for JSON Lines, false for CSV with a header line.
+     * @return The number of files processed.
+     * @throws IOException If the directory cannot be listed.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    public long run(Path directory, Writer out, boolean json) throws IOException, InterruptedException {
+        ResultWriter results = new ResultWriter(out, json);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Semaphore inFlight = new Semaphore(2 * workers);
+        long count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            for (Path file : files) {
+                inFlight.acquire();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            solve(file, results);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                count++;
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        results.flush();
+        return count;
+    }
+
+    private void solve(Path file, ResultWriter results) {
+        long start = System.nanoTime();
+        try {
+            BitBoard board = new BitBoard(FileUtil.loadGameBoard(file));
+            PegSolver.Result result = solver.solve(board, timeLimitNanos, TimeUnit.NANOSECONDS);
+            results.write(file, board.getRows(), result, System.nanoTime() - start, result.isTimedOut() ? TIMEOUT : null);
+        } catch (IOException | RuntimeException | Error e) {
+            // Errors too, such as running out of memory on a huge board, so the file still gets a line
+            results.write(file, 0, null, System.nanoTime() - start, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+
+    /**
+     * Writes result lines from any worker thread, one whole line at a time.
+     */
+    private static class ResultWriter {
+        private final Writer out;
+        private final boolean json;
+        private IOException failure;
+
+        ResultWriter(Writer out, boolean json) throws IOException {
+            this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+            this.json = json;
+            if (!json) {
+                this.out.write("file,size,solvable,nodes,millis,moves,error\n");
+            }
+        }
+
+        synchronized void write(Path file, int size, PegSolver.Result result, long nanos, String error) {
+            if (failure != null) {
+                return;
+            }
+            StringBuilder line = new StringBuilder(128);
+            String name = file.getFileName().toString();
+            String moves = result == null || !result.isSolvable() ? "" : formatMoves(result.getMoves());
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            if (json) {
+                line.append("{\"file\":").append(quoteJson(name));
+                if (error != null) {
+                    if (result != null) {
+                        // Timed out: the search ran, so report how far it got
+                        line.append(",\"size\":").append(size)
+                            .append(",\"nodes\":").append(result.getNodesSearched())
+                            .append(",\"millis\":").append(millis);
+                    }
+                    line.append(",\"error\":").append(quoteJson(error));
+                } else {
+                    line.append(",\"size\":").append(size)
+                        .append(",\"solvable\":").append(result.isSolvable())
+                        .append(",\"nodes\":").append(result.getNodesSearched())
+                        .append(",\"millis\":").append(millis)
+                        .append(",\"moves\":").append(quoteJson(moves));
+                }
+                line.append("}\n");
+            } else {
+                line.append(quoteCsv(name)).append(',');
+                if (error != null && result != null) {
+                    line.append(size).append(",,").append(result.getNodesSearched()).append(',')
+                        .append(millis).append(",,").append(quoteCsv(error));
+                } else if (error != null) {
+                    line.append(",,,").append(millis).append(",,").append(quoteCsv(error));
+                } else {
+                    line.append(size).append(',').append(result.isSolvable()).append(',')
+                        .append(result.getNodesSearched()).append(',').append(millis).append(',')
+                        .append(moves).append(',');
+                }
+                line.append('\n');
+            }
+            try {
+                out.write(line.toString());
+                out.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            out.flush();
+        }
+
+        /**
+         * Formats moves as "fromRow:fromCol-toRow:toCol" separated by spaces.
+         */
+        private static String formatMoves(List<Move> moves) {
+            StringBuilder text = new StringBuilder(moves.size() * 12);
+            for (Move move : moves) {
+                if (text.length() > 0)
+                    text.append(' ');
+                text.append(move.getFrom().getRow()).append(':').append(move.getFrom().getCol()).append('-')
+                    .append(move.getTo().getRow()).append(':').append(move.getTo().getCol());
+            }
+            return text.toString();
+        }
+
+        private static String quoteCsv(String value) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        private static String quoteJson(String value) {
+            StringBuilder text = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    text.append('\\').append(c);
+                } else if (c < 0x20) {
+                    text.append(String.format("\\u%04x", (int) c));
+                } else {
+                    text.append(c);
+                }
+            }
+            return text.append('"').toString();
+        }
+    }
+}
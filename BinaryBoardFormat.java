@@ -0,0 +1,301 @@
+package PegGamee;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary board format. All numbers are big-endian.
+ *
+ * <pre>
+ * magic    4 bytes  "PEGB"
+ * version  1 byte   currently 1
+ * flags    1 byte   bit 0 set if a move history follows the cells
+ * rows     int
+ * cols     int
+ * cells    (rows * cols + 7) / 8 bytes, one bit per cell in row-major order,
+ *          lowest bit first, set if the cell holds a peg
+ * history  int count, then count packed moves (see PackedMove), if flagged
+ * checksum int      CRC-32 of every byte before it
+ * </pre>
+ *
+ * The header and checksum add 18 bytes to each file, so a single 7x7 board takes 25
+ * bytes against 58 as text, and only boards of about 100x100 and up come close to an
+ * eighth of the text size. Many boards of one size are better kept in an archive, which
+ * has one header and one checksum for all of them:
+ *
+ * <pre>
+ * magic    4 bytes  "PEGA"
+ * version  1 byte   currently 1
+ * flags    1 byte   reserved, 0
+ * rows     int
+ * cols     int
+ * boards   (rows * cols + 7) / 8 bytes per board, packed as the cells above,
+ *          as many as fit before the checksum
+ * checksum int      CRC-32 of every byte before it
+ * </pre>
+ *
+ * A 7x7 board then takes 7 bytes, about an eighth of its text.
+ */
+final class BinaryBoardFormat {
+
+    static final int MAGIC = 0x50454742; // "PEGB"
+    static final int ARCHIVE_MAGIC = 0x50454741; // "PEGA"
+    static final int VERSION = 1;
+    private static final int FLAG_HISTORY = 1;
+    private static final int HEADER_SIZE = 14;
+
+    private BinaryBoardFormat() {
+    }
+
+    /**
+     * A board read from a binary file, with the moves that led to it if they were saved.
+     */
+    static final class Contents {
+        final boolean[][] board;
+        final int[] history;
+
+        Contents(boolean[][] board, int[] history) {
+            this.board = board;
+            this.history = history;
+        }
+    }
+
+    /**
+     * Checks if the given first bytes of a file start a binary board.
+     */
+    static boolean hasMagic(byte[] start, int length) {
+        return length >= 4 && ((start[0] & 0xFF) << 24 | (start[1] & 0xFF) << 16
+                | (start[2] & 0xFF) << 8 | (start[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * Writes a board and, optionally, its move history. The stream is flushed but not closed.
+     *
+     * @param out     The stream to write to.
+     * @param board   The board, where true indicates a peg.
+     * @param history The packed moves that led to the board, or null to save the board only.
+     * @throws IOException If an I/O error occurs writing to the stream.
+     */
+    static void write(OutputStream out, boolean[][] board, int[] history) throws IOException {
+        int rows = board.length;
+        int cols = rows == 0 ? 0 : board[0].length;
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, crc));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(history == null ? 0 : FLAG_HISTORY);
+        data.writeInt(rows);
+        data.writeInt(cols);
+
+        byte[] cells = new byte[cellBytes(rows, cols)];
+        packCells(board, cells);
+        data.write(cells);
+
+        if (history != null) {
+            data.writeInt(history.length);
+            for (int move : history) {
+                data.writeInt(move);
+            }
+        }
+        data.flush();
+        new DataOutputStream(out).writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    /**
+     * Reads a board written by {@link #write}, from the buffer's position to its limit.
+     *
+     * @param input The whole binary board.
+     * @return The board and its move history, if one was saved.
+     * @throws BoardFormatException If the data is not a valid binary board, is damaged, or
+     *                              holds a move history that does not lead to the board.
+     */
+    static Contents read(ByteBuffer input) throws BoardFormatException {
+        return read(input, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a board written by {@link #write}, rejecting it before its cells are unpacked
+     * if it has more rows or columns than allowed.
+     *
+     * @param input   The whole binary board.
+     * @param maxSize The largest number of rows and of columns accepted.
+     * @return The board and its move history, if one was saved.
+     * @throws BoardFormatException If the data is not a valid binary board, is too large,
+     *                              is damaged, or holds a move history that does not lead to the board.
+     */
+    static Contents read(ByteBuffer input, int maxSize) throws BoardFormatException {
+        int start = input.position();
+        if (input.remaining() < HEADER_SIZE + 4 || input.getInt() != MAGIC) {
+            throw new BoardFormatException("Not a binary board file");
+        }
+        int version = input.get();
+        if (version != VERSION) {
+            throw new BoardFormatException("Unsupported binary board version " + version);
+        }
+        int flags = input.get();
+        int rows = input.getInt();
+        int cols = input.getInt();
+        if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new BoardFormatException("Invalid board size " + rows + "x" + cols);
+        }
+        if (rows > maxSize || cols > maxSize) {
+            throw new BoardFormatException("Board size " + rows + "x" + cols + " is larger than " + maxSize + "x" + maxSize);
+        }
+
+        if (input.remaining() < cellBytes(rows, cols) + 4) {
+            throw new BoardFormatException("Binary board file is truncated");
+        }
+        boolean[][] board = unpackCells(input, rows, cols);
+
+        int[] history = null;
+        if ((flags & FLAG_HISTORY) != 0) {
+            if (input.remaining() < 8) {
+                throw new BoardFormatException("Binary board file is truncated");
+            }
+            int count = input.getInt();
+            if (count < 0 || input.remaining() < 4L * count + 4) {
+                throw new BoardFormatException("Binary board file is truncated");
+            }
+            history = new int[count];
+            input.asIntBuffer().get(history);
+            input.position(input.position() + 4 * count);
+        }
+
+        int end = input.position();
+        int checksum = input.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(input.duplicate().position(start).limit(end));
+        if ((int) crc.getValue() != checksum) {
+            throw new BoardFormatException("Binary board file is damaged: checksum mismatch");
+        }
+        if (history != null) {
+            int invalid = PackedMove.findInvalidMove(board, history);
+            if (invalid >= 0) {
+                throw new BoardFormatException("Move " + (invalid + 1) + " of the saved history does not lead to the board");
+            }
+        }
+        return new Contents(board, history);
+    }
+
+    /**
+     * Writes boards of one size as an archive. The stream is flushed but not closed.
+     *
+     * @param out    The stream to write to.
+     * @param boards The boards, where true indicates a peg, all of the same size.
+     * @throws IllegalArgumentException If the boards are not all the same size.
+     * @throws IOException If an I/O error occurs writing to the stream.
+     */
+    static void writeArchive(OutputStream out, Iterable<boolean[][]> boards) throws IOException {
+        Iterator<boolean[][]> iterator = boards.iterator();
+        boolean[][] board = iterator.hasNext() ? iterator.next() : null;
+        int rows = board == null ? 0 : board.length;
+        int cols = rows == 0 ? 0 : board[0].length;
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, crc));
+        data.writeInt(ARCHIVE_MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(0);
+        data.writeInt(rows);
+        data.writeInt(cols);
+
+        byte[] cells = new byte[cellBytes(rows, cols)];
+        while (board != null) {
+            if (board.length != rows || (rows > 0 && board[0].length != cols)) {
+                throw new IllegalArgumentException("Every board of an archive must be " + rows + "x" + cols);
+            }
+            packCells(board, cells);
+            data.write(cells);
+            board = iterator.hasNext() ? iterator.next() : null;
+        }
+        data.flush();
+        new DataOutputStream(out).writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    /**
+     * Reads an archive written by {@link #writeArchive}, from the buffer's position to its limit.
+     *
+     * @param input The whole archive.
+     * @return The boards, in the order they were written.
+     * @throws BoardFormatException If the data is not a valid archive or is damaged.
+     */
+    static List<boolean[][]> readArchive(ByteBuffer input) throws BoardFormatException {
+        int start = input.position();
+        if (input.remaining() < HEADER_SIZE + 4 || input.getInt() != ARCHIVE_MAGIC) {
+            throw new BoardFormatException("Not a board archive");
+        }
+        int version = input.get();
+        if (version != VERSION) {
+            throw new BoardFormatException("Unsupported board archive version " + version);
+        }
+        input.get(); // Flags, none defined yet
+        int rows = input.getInt();
+        int cols = input.getInt();
+        boolean empty = rows == 0 && cols == 0;
+        if (!empty && (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE)) {
+            throw new BoardFormatException("Invalid board size " + rows + "x" + cols);
+        }
+        int cellBytes = cellBytes(rows, cols);
+        int records = input.remaining() - 4;
+        if (empty ? records != 0 : records % cellBytes != 0) {
+            throw new BoardFormatException("Board archive is truncated");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(input.duplicate().position(start).limit(input.limit() - 4));
+        if ((int) crc.getValue() != input.getInt(input.limit() - 4)) {
+            throw new BoardFormatException("Board archive is damaged: checksum mismatch");
+        }
+        List<boolean[][]> boards = new ArrayList<>(empty ? 0 : records / cellBytes);
+        for (int i = 0; !empty && i < records / cellBytes; i++) {
+            boards.add(unpackCells(input, rows, cols));
+        }
+        input.position(input.limit());
+        return boards;
+    }
+
+    private static int cellBytes(int rows, int cols) {
+        return (int) (((long) rows * cols + 7) / 8);
+    }
+
+    /**
+     * Packs a board one bit per cell in row-major order, lowest bit first.
+     */
+    private static void packCells(boolean[][] board, byte[] cells) {
+        Arrays.fill(cells, (byte) 0);
+        int bit = 0;
+        for (boolean[] row : board) {
+            for (boolean peg : row) {
+                if (peg)
+                    cells[bit >>> 3] |= 1 << (bit & 7);
+                bit++;
+            }
+        }
+    }
+
+    /**
+     * Unpacks the cells of one board, leaving the buffer after its last byte.
+     */
+    private static boolean[][] unpackCells(ByteBuffer input, int rows, int cols) {
+        boolean[][] board = new boolean[rows][cols];
+        int bit = 0;
+        int current = 0;
+        for (boolean[] row : board) {
+            for (int col = 0; col < cols; col++, bit++) {
+                if ((bit & 7) == 0)
+                    current = input.get();
+                row[col] = (current & (1 << (bit & 7))) != 0;
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,398 @@
+package PegGamee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Represents a square board in a Peg Game whose pegs are stored as a bitmask.
+ * Cell (row, col) is bit row * cols + col. Boards of up to 64 cells fit in one
+ * word; larger boards use as many words as needed. Moves are generated for all
+ * pegs at once with shift-and-mask operations and follow the same rules and
+ * ordering as SqrBoard.
+ */
+public class BitBoard implements PegGame {
+
+    private static final int RIGHT = PackedMove.RIGHT;
+    private static final int LEFT = PackedMove.LEFT;
+    private static final int DOWN = PackedMove.DOWN;
+    private static final int UP = PackedMove.UP;
+
+    private final int rows;
+    private final int cols;
+    private final int[] steps;      // Bit offset from a peg to the peg it jumps over, per direction
+    private final long[] onBoard;   // Every cell of the board
+    private final long[][] launch;  // Per direction, cells whose landing cell is still on the board
+    private final long[] pegs;      // Set bit if a peg is present
+    private final long[][] movers;  // Scratch space for move generation
+    private final long[] empty;     // Scratch space for move generation
+    private final Zobrist zobrist;
+    private final long[] hashes;    // Zobrist hash of the board under each symmetry
+    private GameState gameState;
+
+    /**
+     * Constructs a bitboard for a Peg Game.
+     *
+     * @param board The initial configuration of the board where 'true' represents a peg, and 'false' represents an empty space.
+     */
+    public BitBoard(boolean[][] board) {
+        this.rows = board.length;
+        this.cols = rows == 0 ? 0 : board[0].length;
+        int words = Math.max(1, (rows * cols + 63) >>> 6);
+        this.steps = new int[] { 1, -1, cols, -cols };
+        this.onBoard = new long[words];
+        this.launch = new long[4][words];
+        this.pegs = new long[words];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int bit = row * cols + col;
+                setBit(onBoard, bit);
+                if (board[row][col])
+                    setBit(pegs, bit);
+                if (col + 2 < cols)
+                    setBit(launch[RIGHT], bit);
+                if (col - 2 >= 0)
+                    setBit(launch[LEFT], bit);
+                if (row + 2 < rows)
+                    setBit(launch[DOWN], bit);
+                if (row - 2 >= 0)
+                    setBit(launch[UP], bit);
+            }
+        }
+        this.movers = new long[4][words];
+        this.empty = new long[words];
+        this.zobrist = Zobrist.forSize(rows, cols);
+        this.hashes = zobrist.hash(board);
+        this.gameState = GameState.NOT_STARTED;
+    }
+
+    /**
+     * Constructs a copy of another bitboard. The board geometry is shared, the pegs are not.
+     *
+     * @param other The board to copy.
+     */
+    public BitBoard(BitBoard other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.steps = other.steps;
+        this.onBoard = other.onBoard;
+        this.launch = other.launch;
+        this.pegs = other.pegs.clone();
+        this.movers = new long[4][pegs.length];
+        this.empty = new long[pegs.length];
+        this.zobrist = other.zobrist;
+        this.hashes = other.hashes.clone();
+        this.gameState = other.gameState;
+    }
+
+    /**
+     * Gets the current game state based on the number of pegs and possible moves.
+     *
+     * @return The current game state.
+     */
+    @Override
+    public GameState getGameState() {
+        if (pegCount() == 1) {
+            gameState = GameState.WON;
+        } else if (!hasMoves()) {
+            gameState = GameState.STALEMATE;
+        } else {
+            gameState = GameState.IN_PROGRESS;
+        }
+        return gameState;
+    }
+
+    /**
+     * Checks if a move from one location to another is a valid move.
+     *
+     * @param from The starting location of the move.
+     * @param to   The destination location of the move.
+     * @return True if the move is valid, false otherwise.
+     */
+    public boolean isValidMove(Location from, Location to) {
+        int fromRow = from.getRow(), fromCol = from.getCol();
+        int toRow = to.getRow(), toCol = to.getCol();
+        if (fromRow < 0 || fromRow >= rows || fromCol < 0 || fromCol >= cols ||
+            toRow < 0 || toRow >= rows || toCol < 0 || toCol >= cols) {
+            return false;
+        }
+        boolean isHorizontalMove = fromRow == toRow && Math.abs(fromCol - toCol) == 2;
+        boolean isVerticalMove = fromCol == toCol && Math.abs(fromRow - toRow) == 2;
+        if (!isHorizontalMove && !isVerticalMove) {
+            return false;
+        }
+        int fromBit = fromRow * cols + fromCol;
+        int toBit = toRow * cols + toCol;
+        int midBit = (fromBit + toBit) / 2;
+        return testBit(pegs, fromBit) && testBit(pegs, midBit) && !testBit(pegs, toBit);
+    }
+
+    /**
+     * Gets a collection of possible moves on the current board, in the same order as SqrBoard.
+     *
+     * @return A collection of possible moves.
+     */
+    @Override
+    public Collection<Move> getPossibleMoves() {
+        List<Move> possibleMoves = new ArrayList<>();
+        computeMovers();
+        for (int w = 0; w < pegs.length; w++) {
+            long any = movers[RIGHT][w] | movers[LEFT][w] | movers[DOWN][w] | movers[UP][w];
+            while (any != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(any);
+                any &= any - 1;
+                for (int dir = RIGHT; dir <= UP; dir++) {
+                    if (testBit(movers[dir], bit)) {
+                        int to = bit + 2 * steps[dir];
+                        possibleMoves.add(new Move(new Location(bit / cols, bit % cols),
+                                                   new Location(to / cols, to % cols)));
+                    }
+                }
+            }
+        }
+        return possibleMoves;
+    }
+
+    /**
+     * Writes every possible move on the current board into the given array, packed
+     * as described in PackedMove, in the same order as {@link #getPossibleMoves()}.
+     *
+     * @param moves The array to fill, at least 4 * rows * cols long.
+     * @return The number of moves written.
+     */
+    public int getPossibleMoves(int[] moves) {
+        int count = 0;
+        computeMovers();
+        for (int w = 0; w < pegs.length; w++) {
+            long any = movers[RIGHT][w] | movers[LEFT][w] | movers[DOWN][w] | movers[UP][w];
+            while (any != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(any);
+                any &= any - 1;
+                for (int dir = RIGHT; dir <= UP; dir++) {
+                    if (testBit(movers[dir], bit))
+                        moves[count++] = PackedMove.encode(bit, dir);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Makes a move on the board based on the provided move object.
+     *
+     * @param move The move to be made.
+     * @throws PegGameException If the move is invalid.
+     */
+    @Override
+    public void makeMove(Move move) throws PegGameException {
+        Location from = move.getFrom();
+        Location to = move.getTo();
+        if (!isValidMove(from, to)) {
+            throw new PegGameException("Invalid move");
+        }
+        int fromBit = from.getRow() * cols + from.getCol();
+        int toBit = to.getRow() * cols + to.getCol();
+        flip(fromBit, (fromBit + toBit) / 2, toBit);
+        getGameState();
+    }
+
+    /**
+     * Makes a packed move without validating it. The move must come from
+     * {@link #getPossibleMoves(int[])} on the current position.
+     *
+     * @param move The packed move to be made.
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.fromIndex(move);
+        int step = steps[PackedMove.direction(move)];
+        flip(from, from + step, from + 2 * step);
+    }
+
+    /**
+     * Takes back a packed move previously made with {@link #makeMove(int)}.
+     *
+     * @param move The packed move to take back.
+     */
+    public void undoMove(int move) {
+        makeMove(move); // A jump only toggles its three cells, so it is its own inverse
+    }
+
+    /**
+     * Converts a packed move back to a move object.
+     *
+     * @param move The packed move.
+     * @return The equivalent move.
+     */
+    public Move toMove(int move) {
+        return PackedMove.toMove(move, cols);
+    }
+
+    /**
+     * Gets the number of pegs left on the board.
+     *
+     * @return The number of pegs.
+     */
+    public int pegCount() {
+        int count = 0;
+        for (long word : pegs)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Checks if any peg can still jump.
+     *
+     * @return True if at least one move is possible.
+     */
+    public boolean hasMoves() {
+        computeMovers();
+        for (long[] dir : movers) {
+            for (long word : dir) {
+                if (word != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a Zobrist key of the board that is the same for all of its rotations and reflections.
+     *
+     * @return The canonical key.
+     */
+    public long canonicalKey() {
+        return Zobrist.canonical(hashes);
+    }
+
+    /**
+     * The peg bitmask itself, for readers that walk the pegs without copying. Must not be changed.
+     */
+    long[] pegWords() {
+        return pegs;
+    }
+
+    public boolean isPeg(int row, int col) {
+        return testBit(pegs, row * cols + col);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Converts the bitboard back to the array representation used by SqrBoard.
+     *
+     * @return A new 2D array where true indicates a peg.
+     */
+    public boolean[][] toBooleanArray() {
+        boolean[][] board = new boolean[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                board[row][col] = isPeg(row, col);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Fills {@code movers} with, per direction, every peg that can jump that way:
+     * a peg whose neighbour holds a peg and whose landing cell is empty.
+     */
+    private void computeMovers() {
+        if (pegs.length == 1) {
+            long p = pegs[0];
+            long e = ~p & onBoard[0];
+            for (int dir = RIGHT; dir <= UP; dir++) {
+                int step = steps[dir];
+                long mid = step > 0 ? p >>> step : p << -step;
+                long land = step > 0 ? e >>> (2 * step) : e << (-2 * step);
+                movers[dir][0] = p & mid & land & launch[dir][0];
+            }
+            return;
+        }
+        for (int dir = RIGHT; dir <= UP; dir++) {
+            long[] out = movers[dir];
+            for (int w = 0; w < pegs.length; w++)
+                empty[w] = ~pegs[w] & onBoard[w];
+            gather(pegs, steps[dir], out);
+            gather(empty, 2 * steps[dir], empty);
+            for (int w = 0; w < pegs.length; w++)
+                out[w] &= pegs[w] & empty[w] & launch[dir][w];
+        }
+    }
+
+    /**
+     * Sets bit i of dst to bit i + shift of src, treating bits outside the board as zero.
+     * Safe to call with dst == src.
+     */
+    static void gather(long[] src, int shift, long[] dst) {
+        int n = src.length;
+        if (shift >= 0) {
+            int w = shift >>> 6, b = shift & 63;
+            for (int j = 0; j < n; j++) {
+                long lo = j + w < n ? src[j + w] >>> b : 0;
+                long hi = b != 0 && j + w + 1 < n ? src[j + w + 1] << (64 - b) : 0;
+                dst[j] = lo | hi;
+            }
+        } else {
+            int w = -shift >>> 6, b = -shift & 63;
+            for (int j = n - 1; j >= 0; j--) {
+                long hi = j - w >= 0 ? src[j - w] << b : 0;
+                long lo = b != 0 && j - w - 1 >= 0 ? src[j - w - 1] >>> (64 - b) : 0;
+                dst[j] = hi | lo;
+            }
+        }
+    }
+
+    private void flip(int from, int mid, int to) {
+        pegs[from >>> 6] ^= 1L << from;
+        pegs[mid >>> 6] ^= 1L << mid;
+        pegs[to >>> 6] ^= 1L << to;
+        zobrist.toggle(hashes, from, mid, to);
+    }
+
+    private static boolean testBit(long[] words, int bit) {
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private static void setBit(long[] words, int bit) {
+        words[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Converts the current board state to a string representation.
+     *
+     * @return A string representation of the board.
+     */
+    @Override
+    public String toString() {
+        StringBuilder printboard = new StringBuilder(rows * (2 * cols + 1));
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                printboard.append(isPeg(row, col) ? "o " : ". ");
+            }
+            printboard.append('\n');
+        }
+        return printboard.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + cols) + Arrays.hashCode(pegs);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        BitBoard other = (BitBoard) obj;
+        return rows == other.rows && cols == other.cols && Arrays.equals(pegs, other.pegs);
+    }
+}
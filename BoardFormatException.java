@@ -0,0 +1,30 @@
+package PegGamee;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a board file is not in the expected format.
+ */
+public class BoardFormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an exception for a problem on a given line of the file.
+     *
+     * @param line    The 1-based line number where the problem was found.
+     * @param message A description of the problem.
+     */
+    public BoardFormatException(long line, String message) {
+        super("Line " + line + ": " + message);
+    }
+
+    /**
+     * Constructs an exception for a problem with the file as a whole.
+     *
+     * @param message A description of the problem.
+     */
+    public BoardFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,278 @@
+package PegGamee;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a peg board and the jumps it allows.
+ *
+ * A geometry places its holes on a rectangular grid of rows and columns, so a hole is
+ * named by the same row and column as on a square board and by its row-major index,
+ * row * cols + col. Grid cells that are not holes are never part of a jump.
+ *
+ * Every legal jump on the board, a (from, over, to) triple of hole indexes, is worked
+ * out once when the geometry is built and kept in one flat int array. Jumps are sorted
+ * by starting hole, then by the order the directions were given in, so scanning the
+ * table visits moves in the same order a square board lists them. Move generation is a
+ * scan of that table with no bounds checks. For each hole the geometry also lists every
+ * jump that starts at, passes over or lands on it, which are the only jumps a change to
+ * that hole can make legal or illegal.
+ */
+public final class BoardGeometry {
+
+    /** Jumps along rows and columns, in the order of PackedMove: right, left, down, up. */
+    private static final int[][] ORTHOGONAL = { { 0, 1 }, { 0, -1 }, { 1, 0 }, { -1, 0 } };
+
+    /** The six neighbours of a hole on a triangle drawn with row r holding holes 0 to r. */
+    private static final int[][] TRIANGULAR = { { 0, 1 }, { 0, -1 }, { 1, 0 }, { -1, 0 }, { 1, 1 }, { -1, -1 } };
+
+    private static final BoardGeometry ENGLISH = new BoardGeometry("English", crossMask(false), ORTHOGONAL);
+    private static final BoardGeometry EUROPEAN = new BoardGeometry("European", crossMask(true), ORTHOGONAL);
+
+    private final String name;
+    private final int rows;
+    private final int cols;
+    private final boolean[] holes; // Indexed by row-major cell index
+    private final int holeCount;
+    private final int[] jumps; // from, over, to for each jump
+    private final int[] firstJump; // Jumps starting at cell i are firstJump[i] to firstJump[i + 1] - 1
+    private final int[] touchStart; // Jumps touching cell i are touching[touchStart[i]] to touching[touchStart[i + 1] - 1]
+    private final int[] touching;
+
+    private BoardGeometry(String name, boolean[][] mask, int[][] directions) {
+        this.name = name;
+        this.rows = mask.length;
+        this.cols = rows == 0 ? 0 : mask[0].length;
+        int cells = rows * cols;
+        this.holes = new boolean[cells];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (mask[row].length != cols) {
+                throw new IllegalArgumentException("Every row of the mask must have " + cols + " cells");
+            }
+            for (int col = 0; col < cols; col++) {
+                holes[row * cols + col] = mask[row][col];
+                if (mask[row][col])
+                    count++;
+            }
+        }
+        this.holeCount = count;
+
+        int[] table = new int[3 * cells * directions.length];
+        int size = 0;
+        this.firstJump = new int[cells + 1];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                firstJump[row * cols + col] = size / 3;
+                for (int[] dir : directions) {
+                    int overRow = row + dir[0], overCol = col + dir[1];
+                    int toRow = overRow + dir[0], toCol = overCol + dir[1];
+                    if (isHole(row, col) && isHole(overRow, overCol) && isHole(toRow, toCol)) {
+                        table[size++] = row * cols + col;
+                        table[size++] = overRow * cols + overCol;
+                        table[size++] = toRow * cols + toCol;
+                    }
+                }
+            }
+        }
+        firstJump[cells] = size / 3;
+        this.jumps = Arrays.copyOf(table, size);
+
+        // Each jump touches three holes, so counting then filling builds the lists in two passes
+        this.touchStart = new int[cells + 1];
+        for (int cell : jumps) {
+            touchStart[cell + 1]++;
+        }
+        for (int i = 0; i < cells; i++) {
+            touchStart[i + 1] += touchStart[i];
+        }
+        this.touching = new int[jumps.length];
+        int[] next = Arrays.copyOf(touchStart, cells);
+        for (int i = 0; i < jumps.length; i++) {
+            touching[next[jumps[i]]++] = i / 3;
+        }
+    }
+
+    /**
+     * Gets a rectangular board with jumps along rows and columns, the geometry of SqrBoard.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @return The geometry.
+     */
+    public static BoardGeometry square(int rows, int cols) {
+        boolean[][] mask = new boolean[rows][cols];
+        for (boolean[] row : mask) {
+            Arrays.fill(row, true);
+        }
+        return new BoardGeometry(rows + "x" + cols, mask, ORTHOGONAL);
+    }
+
+    /**
+     * Gets a triangular board with the given number of holes on each side, 5 for the usual
+     * 15-hole board. Row r holds the holes in columns 0 to r, and pegs jump along the rows,
+     * the columns and the diagonal from (r, c) to (r + 2, c + 2).
+     *
+     * @param size The number of rows.
+     * @return The geometry.
+     */
+    public static BoardGeometry triangular(int size) {
+        boolean[][] mask = new boolean[size][size];
+        for (int row = 0; row < size; row++) {
+            Arrays.fill(mask[row], 0, row + 1, true);
+        }
+        return new BoardGeometry("Triangular " + size, mask, TRIANGULAR);
+    }
+
+    /**
+     * @return The 33-hole English cross board.
+     */
+    public static BoardGeometry english() {
+        return ENGLISH;
+    }
+
+    /**
+     * @return The 37-hole European board: the English cross with the four inner corners filled in.
+     */
+    public static BoardGeometry european() {
+        return EUROPEAN;
+    }
+
+    /**
+     * Gets a board of any shape. Pegs jump over a neighbouring hole into the next hole beyond it,
+     * in each of the given directions.
+     *
+     * @param name       The name of the board.
+     * @param mask       The grid, where true marks a hole.
+     * @param directions Row and column offsets to a neighbouring hole, such as {0, 1} for right.
+     * @return The geometry.
+     */
+    public static BoardGeometry custom(String name, boolean[][] mask, int[][] directions) {
+        return new BoardGeometry(name, mask, directions);
+    }
+
+    private static boolean[][] crossMask(boolean european) {
+        boolean[][] mask = new boolean[7][7];
+        for (int row = 0; row < 7; row++) {
+            for (int col = 0; col < 7; col++) {
+                boolean arm = (row >= 2 && row <= 4) || (col >= 2 && col <= 4);
+                boolean innerCorner = row >= 1 && row <= 5 && col >= 1 && col <= 5;
+                mask[row][col] = arm || (european && innerCorner);
+            }
+        }
+        return mask;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return The number of holes on the board.
+     */
+    public int getHoleCount() {
+        return holeCount;
+    }
+
+    /**
+     * Checks if a grid cell is a hole of the board. Cells outside the grid are not.
+     *
+     * @param row The row coordinate.
+     * @param col The column coordinate.
+     * @return True if the cell is a hole.
+     */
+    public boolean isHole(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols && holes[row * cols + col];
+    }
+
+    /**
+     * @return The number of jumps in the table.
+     */
+    public int getJumpCount() {
+        return jumps.length / 3;
+    }
+
+    public int getJumpFrom(int jump) {
+        return jumps[3 * jump];
+    }
+
+    public int getJumpOver(int jump) {
+        return jumps[3 * jump + 1];
+    }
+
+    public int getJumpTo(int jump) {
+        return jumps[3 * jump + 2];
+    }
+
+    /**
+     * Finds the jump between two holes.
+     *
+     * @param from The row-major index of the starting hole.
+     * @param to   The row-major index of the landing hole.
+     * @return The jump, or -1 if the board has no such jump.
+     */
+    public int findJump(int from, int to) {
+        if (from < 0 || from >= holes.length) {
+            return -1;
+        }
+        for (int jump = firstJump[from]; jump < firstJump[from + 1]; jump++) {
+            if (jumps[3 * jump + 2] == to)
+                return jump;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a board with a peg in every hole but one.
+     *
+     * @param emptyRow The row coordinate of the empty hole.
+     * @param emptyCol The column coordinate of the empty hole.
+     * @return The board, where true indicates a peg.
+     */
+    public boolean[][] fullBoard(int emptyRow, int emptyCol) {
+        if (!isHole(emptyRow, emptyCol)) {
+            throw new IllegalArgumentException("(" + emptyRow + ", " + emptyCol + ") is not a hole of the " + name + " board");
+        }
+        boolean[][] board = new boolean[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                board[row][col] = holes[row * cols + col];
+            }
+        }
+        board[emptyRow][emptyCol] = false;
+        return board;
+    }
+
+    /**
+     * The flat jump table: from, over and to for each jump in turn. Must not be changed.
+     */
+    int[] jumps() {
+        return jumps;
+    }
+
+    /**
+     * Jump indexes touching each hole, see {@link #touchStart()}. Must not be changed.
+     */
+    int[] touching() {
+        return touching;
+    }
+
+    /**
+     * Offsets into {@link #touching()}: the jumps touching cell i are at touchStart[i] to touchStart[i + 1] - 1.
+     */
+    int[] touchStart() {
+        return touchStart;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,28 @@
+package PegGamee;
+
+/**
+ * Receives a notification for every cell of a board that gains or loses its peg.
+ * A move, or taking one back, changes three cells and so sends three notifications,
+ * after the board, its legal moves, its game state and its move history have all been
+ * updated, followed by one notification for the move as a whole.
+ */
+public interface BoardListener {
+
+    /**
+     * Called when a cell changes.
+     *
+     * @param row The row coordinate of the cell.
+     * @param col The column coordinate of the cell.
+     * @param peg True if the cell now holds a peg.
+     */
+    void cellChanged(int row, int col, boolean peg);
+
+    /**
+     * Called once a move has been made or taken back, after its three cells.
+     *
+     * @param move The packed move, see PackedMove.
+     * @param undo True if the move was taken back rather than made.
+     */
+    default void moveMade(int move, boolean undo) {
+    }
+}
@@ -0,0 +1,151 @@
+package PegGamee;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a square board, safe to share between threads without copying.
+ *
+ * The pegs are packed one bit per cell in row-major order, and the hash is worked out once
+ * when the snapshot is made. Snapshots are interned through a small direct-mapped cache, so
+ * taking a snapshot of a position that was seen recently returns the same object and the
+ * same storage. The cache is bounded: a new position simply replaces whatever shared its
+ * slot, so it never grows and never needs to be cleared. Two snapshots of the same position
+ * are equal whether or not they came out of the cache, so they work as map keys either way.
+ */
+public final class BoardSnapshot {
+
+    private static final int CACHE_BITS = 12;
+
+    // Slots are read and written without locking. Every field of a snapshot is final, so a
+    // snapshot seen through the cache is always complete; a lost update only costs a miss.
+    private static final BoardSnapshot[] CACHE = new BoardSnapshot[1 << CACHE_BITS];
+
+    private final int rows;
+    private final int cols;
+    private final long[] bits; // Bit (cell % 64) of word (cell / 64) is set if the cell holds a peg
+    private final int pegCount;
+    private final int hash;
+
+    private BoardSnapshot(int rows, int cols, long[] bits) {
+        this.rows = rows;
+        this.cols = cols;
+        this.bits = bits;
+        int pegs = 0;
+        long mix = rows * 31L + cols;
+        for (long word : bits) {
+            pegs += Long.bitCount(word);
+            mix = (mix ^ word) * 0x9E3779B97F4A7C15L;
+        }
+        this.pegCount = pegs;
+        this.hash = (int) (mix ^ (mix >>> 32));
+    }
+
+    /**
+     * Takes a snapshot of a board.
+     *
+     * @param board The board, where true indicates a peg. It is copied, so it may change afterwards.
+     * @return The snapshot, shared with earlier snapshots of the same position while it stays in the cache.
+     */
+    public static BoardSnapshot of(boolean[][] board) {
+        int rows = board.length, cols = rows == 0 ? 0 : board[0].length;
+        long[] bits = new long[(rows * cols + 63) >>> 6];
+        int cell = 0;
+        for (boolean[] row : board) {
+            for (int col = 0; col < cols; col++, cell++) {
+                if (row[col])
+                    bits[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return intern(new BoardSnapshot(rows, cols, bits));
+    }
+
+    /**
+     * Returns the cached snapshot equal to the given one, or caches the given one.
+     */
+    private static BoardSnapshot intern(BoardSnapshot snapshot) {
+        int slot = (snapshot.hash ^ (snapshot.hash >>> CACHE_BITS)) & (CACHE.length - 1);
+        BoardSnapshot cached = CACHE[slot];
+        if (snapshot.equals(cached)) {
+            return cached;
+        }
+        CACHE[slot] = snapshot;
+        return snapshot;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getPegCount() {
+        return pegCount;
+    }
+
+    /**
+     * Checks if a cell holds a peg.
+     *
+     * @param row The row coordinate.
+     * @param col The column coordinate.
+     * @return True if the cell holds a peg.
+     * @throws IndexOutOfBoundsException If the cell is not on the board.
+     */
+    public boolean isPeg(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("(" + row + ", " + col + ") is not on a " + rows + "x" + cols + " board");
+        }
+        int cell = row * cols + col;
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Copies the snapshot back into a board array, for example to start a new SqrBoard from it.
+     *
+     * @return A new board, where true indicates a peg.
+     */
+    public boolean[][] toBoard() {
+        boolean[][] board = new boolean[rows][cols];
+        int cell = 0;
+        for (boolean[] row : board) {
+            for (int col = 0; col < cols; col++, cell++) {
+                row[col] = (bits[cell >>> 6] & (1L << cell)) != 0;
+            }
+        }
+        return board;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof BoardSnapshot))
+            return false;
+        BoardSnapshot other = (BoardSnapshot) obj;
+        return hash == other.hash && rows == other.rows && cols == other.cols && Arrays.equals(bits, other.bits);
+    }
+
+    /**
+     * Converts the snapshot to text in the same form as SqrBoard.toString.
+     *
+     * @return A string representation of the board.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(rows * (2 * cols + 1));
+        int cell = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++, cell++) {
+                text.append((bits[cell >>> 6] & (1L << cell)) != 0 ? "o " : ". ");
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
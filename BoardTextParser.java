@@ -0,0 +1,129 @@
+package PegGamee;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Parses the text board format read and written by FileUtil: the board size on the
+ * first line, then one line per row with 'o' for a peg and any other character for
+ * an empty cell. Input is fed in chunks of any size, so the same parser serves
+ * streams read through a small buffer and memory-mapped files. Rows are allocated as
+ * they are reached, so a size line larger than the input behind it costs no memory.
+ */
+final class BoardTextParser {
+
+    private static final int MAX_HEADER_LENGTH = 16;
+    static final int MAX_SIZE = 1 << 15; // A 32768 x 32768 board already takes 1 GB
+    private static final int INITIAL_ROWS = 64;
+
+    private final int maxSize;
+    private final StringBuilder header = new StringBuilder();
+    private boolean[][] board; // Null while the size line is being read
+    private int size;
+    private int row;
+    private int col;
+    private long line = 1;
+
+    BoardTextParser() {
+        this(MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The largest board size accepted, checked before any row is allocated.
+     */
+    BoardTextParser(int maxSize) {
+        this.maxSize = Math.min(maxSize, MAX_SIZE);
+    }
+
+    /**
+     * Parses the next chunk of input, from the buffer's position to its limit.
+     *
+     * @param input The bytes to parse.
+     * @throws BoardFormatException If the input is not a valid board.
+     */
+    void feed(ByteBuffer input) throws BoardFormatException {
+        while (board == null && input.hasRemaining()) {
+            byte b = input.get();
+            if (b == '\n') {
+                startBoard();
+            } else if (header.length() < MAX_HEADER_LENGTH) {
+                header.append((char) (b & 0xFF));
+            } else {
+                throw new BoardFormatException(1, "expected the board size but found '" + header + "...'");
+            }
+        }
+        if (board == null) {
+            return;
+        }
+
+        boolean[][] board = this.board;
+        int size = this.size, row = this.row, col = this.col;
+        while (row < size && input.hasRemaining()) {
+            byte b = input.get();
+            if (b == '\n') {
+                if (col != size)
+                    throw new BoardFormatException(line, "expected " + size + " cells but found " + col);
+                row++;
+                col = 0;
+                line++;
+            } else if (b != '\r') {
+                if (col == size)
+                    throw new BoardFormatException(line, "expected " + size + " cells but found more");
+                if (col == 0)
+                    board = addRow(row);
+                board[row][col++] = b == 'o';
+            }
+        }
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Checks that the whole board was read and returns it.
+     *
+     * @return A 2D boolean array representing the game board, where true indicates an occupied cell.
+     * @throws BoardFormatException If the input ended before the board was complete.
+     */
+    boolean[][] finish() throws BoardFormatException {
+        if (board == null) {
+            startBoard();
+        }
+        if (row == size - 1 && col == size) {
+            row++; // The last row may end without a newline
+        }
+        if (row < size) {
+            if (col == 0)
+                throw new BoardFormatException("Expected " + size + " rows but found " + row);
+            throw new BoardFormatException(line, "expected " + size + " cells but found " + col);
+        }
+        return board;
+    }
+
+    /**
+     * Makes room for a row, doubling the row array up to the board size if needed.
+     */
+    private boolean[][] addRow(int row) {
+        if (row == board.length) {
+            board = Arrays.copyOf(board, (int) Math.min(size, 2L * board.length));
+        }
+        board[row] = new boolean[size];
+        return board;
+    }
+
+    private void startBoard() throws BoardFormatException {
+        String text = header.toString().trim();
+        if (text.isEmpty()) {
+            throw new BoardFormatException("Missing board size on the first line");
+        }
+        try {
+            size = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new BoardFormatException(1, "expected the board size but found '" + text + "'");
+        }
+        if (size < 1 || size > maxSize) {
+            throw new BoardFormatException(1, "board size must be from 1 to " + maxSize + " but was " + size);
+        }
+        board = new boolean[Math.min(size, INITIAL_ROWS)][];
+        line = 2;
+    }
+}
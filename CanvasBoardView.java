@@ -0,0 +1,261 @@
+package PegGamee;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws a whole board on a single Canvas, for boards too large for one button per cell.
+ *
+ * Only the cells inside the viewport are drawn. Scrolling zooms around the mouse pointer and
+ * dragging pans. Clicks are mapped back to cells and passed to the click handler, so the
+ * select-then-jump interaction stays in PegGameGUI. A full redraw happens at most once per
+ * frame and only after the view changed; a move only redraws its own cells.
+ */
+public class CanvasBoardView extends Pane implements BoardListener {
+
+    // Below this cell size, in pixels, cells are drawn as plain pixels instead of circles
+    private static final double PIXEL_MODE_CELL_SIZE = 6;
+    private static final double MIN_CELL_SIZE = 0.25;
+    private static final double MAX_CELL_SIZE = 80;
+    private static final double DRAG_THRESHOLD = 4;
+
+    private static final int PEG_ARGB = 0xFF000000;
+    private static final int EMPTY_ARGB = 0xFFFFFFFF;
+    private static final int SELECTED_ARGB = 0xFFFFFF00;
+    private static final int BACKGROUND_ARGB = 0xFF4B0082; // Same indigo as the main window
+
+    private final Canvas canvas = new Canvas();
+    private final boolean[][] board;
+    private final int rows;
+    private final int cols;
+    private BiConsumer<Integer, Integer> onCellClicked = (row, col) -> { };
+
+    private double cellSize;
+    private double offsetX; // Canvas position of the top-left corner of cell (0, 0)
+    private double offsetY;
+    private int selectedRow = -1;
+    private int selectedCol = -1;
+    private boolean dirty = true;
+    private int[] pixels = new int[0];
+
+    private double pressX;
+    private double pressY;
+    private boolean dragging;
+
+    private final AnimationTimer redraw = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (dirty) {
+                dirty = false;
+                drawAll();
+            }
+        }
+    };
+
+    /**
+     * Constructs a view of a board. The view reads the board array directly and expects to
+     * be registered as a listener of the board so it hears about every change.
+     *
+     * @param board The board array of the game being shown.
+     */
+    public CanvasBoardView(boolean[][] board) {
+        this.board = board;
+        this.rows = board.length;
+        this.cols = rows == 0 ? 0 : board[0].length;
+        getChildren().add(canvas);
+        canvas.widthProperty().bind(widthProperty());
+        canvas.heightProperty().bind(heightProperty());
+        canvas.widthProperty().addListener((obs, old, width) -> invalidate());
+        canvas.heightProperty().addListener((obs, old, height) -> invalidate());
+
+        setOnScroll(this::zoom);
+        setOnMousePressed(this::mousePressed);
+        setOnMouseDragged(this::mouseDragged);
+        setOnMouseReleased(this::mouseReleased);
+        sceneProperty().addListener((obs, old, scene) -> {
+            if (scene == null) redraw.stop(); else redraw.start();
+        });
+    }
+
+    /**
+     * Sets the handler called with the row and column of a clicked cell.
+     *
+     * @param handler The click handler.
+     */
+    public void setOnCellClicked(BiConsumer<Integer, Integer> handler) {
+        this.onCellClicked = handler;
+    }
+
+    /**
+     * Highlights a cell as the selected peg, or clears the highlight.
+     *
+     * @param row The row of the selected cell, or -1 for none.
+     * @param col The column of the selected cell, or -1 for none.
+     */
+    public void setSelected(int row, int col) {
+        int oldRow = selectedRow, oldCol = selectedCol;
+        selectedRow = row;
+        selectedCol = col;
+        if (oldRow >= 0)
+            drawCell(oldRow, oldCol);
+        if (row >= 0)
+            drawCell(row, col);
+    }
+
+    @Override
+    public void cellChanged(int row, int col, boolean peg) {
+        drawCell(row, col);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        super.layoutChildren();
+        if (cellSize == 0 && getWidth() > 0 && getHeight() > 0 && rows > 0) {
+            // Start with the whole board in view
+            cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, Math.min(getWidth() / cols, getHeight() / rows)));
+            offsetX = (getWidth() - cellSize * cols) / 2;
+            offsetY = (getHeight() - cellSize * rows) / 2;
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        dirty = true;
+    }
+
+    private void zoom(ScrollEvent event) {
+        double factor = event.getDeltaY() > 0 ? 1.25 : 0.8;
+        double newSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, cellSize * factor));
+        // Keep the board point under the pointer in place
+        offsetX = event.getX() - (event.getX() - offsetX) * newSize / cellSize;
+        offsetY = event.getY() - (event.getY() - offsetY) * newSize / cellSize;
+        cellSize = newSize;
+        invalidate();
+        event.consume();
+    }
+
+    private void mousePressed(MouseEvent event) {
+        pressX = event.getX();
+        pressY = event.getY();
+        dragging = false;
+    }
+
+    private void mouseDragged(MouseEvent event) {
+        double dx = event.getX() - pressX, dy = event.getY() - pressY;
+        if (!dragging && Math.hypot(dx, dy) < DRAG_THRESHOLD)
+            return;
+        dragging = true;
+        offsetX += dx;
+        offsetY += dy;
+        pressX = event.getX();
+        pressY = event.getY();
+        invalidate();
+    }
+
+    private void mouseReleased(MouseEvent event) {
+        if (dragging || event.getButton() != MouseButton.PRIMARY || isDisabled())
+            return;
+        int col = (int) Math.floor((event.getX() - offsetX) / cellSize);
+        int row = (int) Math.floor((event.getY() - offsetY) / cellSize);
+        if (row >= 0 && row < rows && col >= 0 && col < cols)
+            onCellClicked.accept(row, col);
+    }
+
+    /**
+     * Redraws the viewport: circles when cells are large enough, one pixel block per cell otherwise.
+     */
+    private void drawAll() {
+        int width = (int) Math.ceil(canvas.getWidth()), height = (int) Math.ceil(canvas.getHeight());
+        if (width == 0 || height == 0 || cellSize == 0)
+            return;
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        if (cellSize < PIXEL_MODE_CELL_SIZE) {
+            drawPixels(g, width, height);
+            return;
+        }
+        g.setFill(Color.INDIGO);
+        g.fillRect(0, 0, width, height);
+        int firstRow = Math.max(0, (int) Math.floor(-offsetY / cellSize));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((height - offsetY) / cellSize));
+        int firstCol = Math.max(0, (int) Math.floor(-offsetX / cellSize));
+        int lastCol = Math.min(cols - 1, (int) Math.floor((width - offsetX) / cellSize));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                drawCircle(g, row, col);
+            }
+        }
+    }
+
+    private void drawPixels(GraphicsContext g, int width, int height) {
+        if (pixels.length < width * height)
+            pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int row = (int) Math.floor((y - offsetY) / cellSize);
+            int base = y * width;
+            if (row < 0 || row >= rows) {
+                Arrays.fill(pixels, base, base + width, BACKGROUND_ARGB);
+                continue;
+            }
+            boolean[] cells = board[row];
+            for (int x = 0; x < width; x++) {
+                int col = (int) Math.floor((x - offsetX) / cellSize);
+                pixels[base + x] = col < 0 || col >= cols ? BACKGROUND_ARGB : cellColor(row, col, cells[col]);
+            }
+        }
+        g.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+    }
+
+    /**
+     * Redraws a single cell if it is inside the viewport.
+     */
+    private void drawCell(int row, int col) {
+        if (cellSize == 0 || dirty)
+            return; // A full redraw is already pending
+        double x = offsetX + col * cellSize, y = offsetY + row * cellSize;
+        if (x + cellSize < 0 || y + cellSize < 0 || x > canvas.getWidth() || y > canvas.getHeight())
+            return;
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        if (cellSize < PIXEL_MODE_CELL_SIZE) {
+            g.setFill(argbToColor(cellColor(row, col, board[row][col])));
+            g.fillRect(x, y, cellSize, cellSize);
+        } else {
+            g.setFill(Color.INDIGO);
+            g.fillRect(x, y, cellSize, cellSize);
+            drawCircle(g, row, col);
+        }
+    }
+
+    private void drawCircle(GraphicsContext g, int row, int col) {
+        double inset = cellSize * 0.1;
+        g.setFill(argbToColor(cellColor(row, col, board[row][col])));
+        g.fillOval(offsetX + col * cellSize + inset, offsetY + row * cellSize + inset,
+                   cellSize - 2 * inset, cellSize - 2 * inset);
+    }
+
+    private int cellColor(int row, int col, boolean peg) {
+        if (row == selectedRow && col == selectedCol)
+            return SELECTED_ARGB;
+        return peg ? PEG_ARGB : EMPTY_ARGB;
+    }
+
+    private static Color argbToColor(int argb) {
+        switch (argb) {
+            case PEG_ARGB:
+                return Color.BLACK;
+            case SELECTED_ARGB:
+                return Color.YELLOW;
+            default:
+                return Color.WHITE;
+        }
+    }
+}
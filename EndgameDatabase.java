@@ -0,0 +1,473 @@
+package PegGamee;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A retrograde endgame database: for every position with up to a given number of pegs on
+ * a board geometry, one bit telling whether a single peg can still be reached from it.
+ *
+ * A position with k pegs is a k-subset of the board's holes. Numbering the holes 0 to H - 1
+ * in row-major order, the subset with holes h1 &lt; h2 &lt; ... &lt; hk has the index
+ * C(h1, 1) + C(h2, 2) + ... + C(hk, k), which numbers the C(H, k) positions of each level
+ * densely from 0. Each level is a bitset over those indexes, so a lookup costs k additions
+ * and one bit test.
+ *
+ * The database is built backwards. Every one-peg position is won. A position with k pegs is
+ * winnable exactly when some jump leads to a winnable position with k - 1 pegs, so each
+ * level is found by taking every jump back from every winnable position one level down.
+ * The positions of a level are split across a ForkJoinPool and the bits of the next level
+ * are set with atomic ORs. Levels are written to a file as they are finished, and lookups
+ * read the file through memory maps, so only the level being built is held on the heap.
+ *
+ * Usage: {@code java PegGamee.EndgameDatabase <english|european|triangular SIZE|square ROWS COLS> <max pegs> <file>}
+ */
+public final class EndgameDatabase {
+
+    private static final int MAGIC = 0x50454745; // "PEGE"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CHUNK_WORDS = 1024; // Words of a level handed to one task while building
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final BoardGeometry geometry;
+    private final int maxPegs;
+    private final int[] ordinal; // Hole number of each grid cell, -1 for cells that are not holes
+    private final long[][] binomial; // binomial[n][k] = C(n, k) for n up to the hole count and k up to maxPegs
+    private final ByteBuffer[] levels; // Indexed by peg count, null for level 0
+    private final boolean square; // True if the geometry is the one SqrBoard and BitBoard use
+
+    private EndgameDatabase(BoardGeometry geometry, int maxPegs, ByteBuffer[] levels) {
+        this.geometry = geometry;
+        this.maxPegs = maxPegs;
+        this.ordinal = ordinals(geometry);
+        this.binomial = binomials(geometry.getHoleCount(), maxPegs);
+        this.levels = levels;
+        this.square = geometry.getHoleCount() == geometry.getRows() * geometry.getCols()
+                && fingerprint(geometry) == fingerprint(BoardGeometry.square(geometry.getRows(), geometry.getCols()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: EndgameDatabase <english|european|triangular SIZE|square ROWS COLS> <max pegs> <file>");
+            System.exit(2);
+        }
+        int next = 1;
+        BoardGeometry geometry;
+        switch (args[0]) {
+            case "english":
+                geometry = BoardGeometry.english();
+                break;
+            case "european":
+                geometry = BoardGeometry.european();
+                break;
+            case "triangular":
+                geometry = BoardGeometry.triangular(Integer.parseInt(args[next++]));
+                break;
+            case "square":
+                geometry = BoardGeometry.square(Integer.parseInt(args[next]), Integer.parseInt(args[next + 1]));
+                next += 2;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown board " + args[0]);
+        }
+        int maxPegs = Integer.parseInt(args[next]);
+        long start = System.nanoTime();
+        EndgameDatabase database = build(geometry, maxPegs, Paths.get(args[next + 1]), ForkJoinPool.commonPool());
+        for (int pegs = 1; pegs <= maxPegs; pegs++) {
+            System.err.println(pegs + " pegs: " + database.countWinnable(pegs) + " of " + database.countPositions(pegs) + " winnable");
+        }
+        System.err.println("Built in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Builds the database for a geometry, writes it to a file and opens it.
+     *
+     * @param geometry The board geometry.
+     * @param maxPegs  The largest peg count to cover.
+     * @param file     The file to write, replaced if it exists.
+     * @param pool     The pool the work of each level is split across.
+     * @return The database, read from the file just written.
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If a level is too large for a single bitset.
+     */
+    public static EndgameDatabase build(BoardGeometry geometry, int maxPegs, Path file, ForkJoinPool pool) throws IOException {
+        int holes = geometry.getHoleCount();
+        if (maxPegs < 1 || maxPegs > holes) {
+            throw new IllegalArgumentException("Peg count must be from 1 to " + holes + " but was " + maxPegs);
+        }
+        long[][] binomial = binomials(holes, maxPegs);
+        for (int pegs = 1; pegs <= maxPegs; pegs++) {
+            if (levelBytes(binomial[holes][pegs]) > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many positions with " + pegs + " pegs for one level");
+            }
+        }
+        Builder builder = new Builder(geometry, binomial);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(geometry.getRows()).putInt(geometry.getCols())
+                  .putInt(maxPegs).putInt(holes).putLong(fingerprint(geometry)).flip();
+            writeFully(out, header);
+
+            long[] level = new long[(holes + 63) >>> 6];
+            for (int bit = 0; bit < holes; bit++) {
+                level[bit >>> 6] |= 1L << bit; // Every one-peg position is won
+            }
+            writeLevel(out, level);
+            for (int pegs = 2; pegs <= maxPegs; pegs++) {
+                level = builder.nextLevel(level, pegs, pool);
+                writeLevel(out, level);
+            }
+        }
+        return open(geometry, file);
+    }
+
+    /**
+     * Opens a database written by {@link #build}.
+     *
+     * @param geometry The board geometry the database was built for.
+     * @param file     The database file.
+     * @return The database.
+     * @throws IOException If the file cannot be read, is not a database or was built for another geometry.
+     */
+    public static EndgameDatabase open(BoardGeometry geometry, Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not an endgame database: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported endgame database version " + version);
+            }
+            int rows = header.getInt(), cols = header.getInt(), maxPegs = header.getInt(), holes = header.getInt();
+            if (rows != geometry.getRows() || cols != geometry.getCols() || holes != geometry.getHoleCount()
+                    || header.getLong() != fingerprint(geometry) || maxPegs < 1 || maxPegs > holes) {
+                throw new IOException("Endgame database " + file + " was not built for the " + geometry + " board");
+            }
+
+            long[][] binomial = binomials(holes, maxPegs);
+            ByteBuffer[] levels = new ByteBuffer[maxPegs + 1];
+            long position = HEADER_SIZE;
+            for (int pegs = 1; pegs <= maxPegs; pegs++) {
+                long bytes = levelBytes(binomial[holes][pegs]);
+                if (position + bytes > in.size()) {
+                    throw new IOException("Endgame database " + file + " is truncated");
+                }
+                levels[pegs] = in.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+                position += bytes;
+            }
+            return new EndgameDatabase(geometry, maxPegs, levels);
+        }
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return The largest peg count the database covers.
+     */
+    public int getMaxPegs() {
+        return maxPegs;
+    }
+
+    /**
+     * Checks if the database can be used for a rectangular SqrBoard or BitBoard of the given size.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @return True if the database was built for the square geometry of that size.
+     */
+    public boolean fitsSquareBoard(int rows, int cols) {
+        return square && rows == geometry.getRows() && cols == geometry.getCols();
+    }
+
+    /**
+     * Checks if a single peg can still be reached from a position.
+     *
+     * @param board The position, where true indicates a peg, on a grid the size of the geometry.
+     * @return True if the position can be won.
+     * @throws IllegalArgumentException If the position has no pegs or more pegs than the database covers.
+     */
+    public boolean isWinnable(boolean[][] board) {
+        long rank = 0;
+        int pegs = 0;
+        int cols = geometry.getCols();
+        for (int row = 0; row < board.length; row++) {
+            boolean[] cells = board[row];
+            for (int col = 0; col < cells.length; col++) {
+                if (cells[col]) {
+                    int hole = ordinal[row * cols + col];
+                    if (hole < 0)
+                        throw new IllegalArgumentException("(" + row + ", " + col + ") is not a hole of the " + geometry + " board");
+                    if (++pegs > maxPegs)
+                        throw new IllegalArgumentException("More than " + maxPegs + " pegs on the board");
+                    rank += binomial[hole][pegs];
+                }
+            }
+        }
+        return test(pegs, rank);
+    }
+
+    /**
+     * Checks if a single peg can still be reached from a bitboard position, without allocating.
+     * The database must fit the board, see {@link #fitsSquareBoard}.
+     */
+    boolean isWinnable(BitBoard board) {
+        return isWinnable(board.pegWords());
+    }
+
+    /**
+     * Checks if a single peg can still be reached from a position held as a bitset, bit
+     * (row * cols + col) set for each peg, as in BitBoard. Only the set bits are visited,
+     * so this costs one word per 64 cells plus a few steps per peg. The database must fit
+     * the board, see {@link #fitsSquareBoard}.
+     */
+    boolean isWinnable(long[] words) {
+        long rank = 0;
+        int pegs = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                if (++pegs > maxPegs)
+                    throw new IllegalArgumentException("More than " + maxPegs + " pegs on the board");
+                rank += binomial[(w << 6) + Long.numberOfTrailingZeros(word)][pegs];
+                word &= word - 1;
+            }
+        }
+        return test(pegs, rank);
+    }
+
+    /**
+     * @return The number of positions with the given number of pegs.
+     */
+    public long countPositions(int pegs) {
+        return binomial[geometry.getHoleCount()][pegs];
+    }
+
+    /**
+     * @return The number of winnable positions with the given number of pegs.
+     */
+    public long countWinnable(int pegs) {
+        ByteBuffer level = levels[pegs];
+        long count = 0;
+        for (int i = 0; i < level.limit(); i += 8) {
+            count += Long.bitCount(level.getLong(i));
+        }
+        return count;
+    }
+
+    private boolean test(int pegs, long rank) {
+        if (pegs == 0) {
+            throw new IllegalArgumentException("The board has no pegs");
+        }
+        return (levels[pegs].getLong((int) (rank >>> 6) << 3) >>> (rank & 63) & 1) != 0;
+    }
+
+    /**
+     * Builds one level of the database from the level below it.
+     */
+    private static final class Builder {
+        private final int holes;
+        private final long[][] binomial;
+        private final int[] landStart; // Jumps landing on hole i are landFrom/landOver[landStart[i]] to [landStart[i + 1] - 1]
+        private final int[] landFrom;
+        private final int[] landOver;
+
+        Builder(BoardGeometry geometry, long[][] binomial) {
+            this.holes = geometry.getHoleCount();
+            this.binomial = binomial;
+            int[] ordinal = ordinals(geometry);
+            int jumps = geometry.getJumpCount();
+            this.landStart = new int[holes + 1];
+            for (int jump = 0; jump < jumps; jump++) {
+                landStart[ordinal[geometry.getJumpTo(jump)] + 1]++;
+            }
+            for (int i = 0; i < holes; i++) {
+                landStart[i + 1] += landStart[i];
+            }
+            this.landFrom = new int[jumps];
+            this.landOver = new int[jumps];
+            int[] next = landStart.clone();
+            for (int jump = 0; jump < jumps; jump++) {
+                int slot = next[ordinal[geometry.getJumpTo(jump)]]++;
+                landFrom[slot] = ordinal[geometry.getJumpFrom(jump)];
+                landOver[slot] = ordinal[geometry.getJumpOver(jump)];
+            }
+        }
+
+        /**
+         * Takes every jump back from every winnable position with pegs - 1 pegs.
+         */
+        long[] nextLevel(long[] below, int pegs, ForkJoinPool pool) {
+            long[] level = new long[(int) ((binomial[holes][pegs] + 63) >>> 6)];
+            int chunks = (below.length + CHUNK_WORDS - 1) / CHUNK_WORDS;
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int[] from = new int[pegs - 1];
+                int[] to = new int[pegs];
+                boolean[] occupied = new boolean[holes];
+                int end = Math.min(below.length, (chunk + 1) * CHUNK_WORDS);
+                for (int w = chunk * CHUNK_WORDS; w < end; w++) {
+                    long word = below[w];
+                    while (word != 0) {
+                        long rank = ((long) w << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        unrank(rank, from);
+                        unjumpAll(from, to, occupied, level);
+                    }
+                }
+            })).join();
+            return level;
+        }
+
+        private void unjumpAll(int[] from, int[] to, boolean[] occupied, long[] level) {
+            for (int hole : from)
+                occupied[hole] = true;
+            for (int peg : from) {
+                for (int i = landStart[peg]; i < landStart[peg + 1]; i++) {
+                    int start = landFrom[i], over = landOver[i];
+                    if (!occupied[start] && !occupied[over]) {
+                        setBit(level, rank(from, peg, start, over, to));
+                    }
+                }
+            }
+            for (int hole : from)
+                occupied[hole] = false;
+        }
+
+        /**
+         * Ranks the position with the peg on hole removed and pegs on a and b added.
+         */
+        private long rank(int[] from, int removed, int a, int b, int[] to) {
+            int low = Math.min(a, b), high = Math.max(a, b);
+            int n = 0;
+            for (int hole : from) {
+                if (hole == removed)
+                    continue;
+                if (low >= 0 && low < hole) {
+                    to[n++] = low;
+                    low = -1;
+                }
+                if (high >= 0 && high < hole) {
+                    to[n++] = high;
+                    high = -1;
+                }
+                to[n++] = hole;
+            }
+            if (low >= 0)
+                to[n++] = low;
+            if (high >= 0)
+                to[n++] = high;
+            long rank = 0;
+            for (int i = 0; i < n; i++) {
+                rank += binomial[to[i]][i + 1];
+            }
+            return rank;
+        }
+
+        /**
+         * Fills holes, in increasing order, with the position of the given rank.
+         */
+        private void unrank(long rank, int[] holes) {
+            int hole = this.holes - 1;
+            for (int i = holes.length; i >= 1; i--) {
+                while (binomial[hole][i] > rank)
+                    hole--;
+                holes[i - 1] = hole;
+                rank -= binomial[hole][i];
+                hole--;
+            }
+        }
+
+        private static void setBit(long[] level, long rank) {
+            int w = (int) (rank >>> 6);
+            long mask = 1L << rank;
+            if ((level[w] & mask) == 0) {
+                WORDS.getAndBitwiseOr(level, w, mask);
+            }
+        }
+    }
+
+    private static int[] ordinals(BoardGeometry geometry) {
+        int[] ordinal = new int[geometry.getRows() * geometry.getCols()];
+        int next = 0;
+        for (int row = 0; row < geometry.getRows(); row++) {
+            for (int col = 0; col < geometry.getCols(); col++) {
+                ordinal[row * geometry.getCols() + col] = geometry.isHole(row, col) ? next++ : -1;
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Pascal's triangle up to n = holes and k = maxPegs, where binomial[n][k] is 0 whenever
+     * k &gt; n. Values too large for a long are capped at Long.MAX_VALUE.
+     */
+    private static long[][] binomials(int holes, int maxPegs) {
+        long[][] binomial = new long[holes + 1][maxPegs + 1];
+        for (int n = 0; n <= holes; n++) {
+            binomial[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, maxPegs); k++) {
+                long sum = binomial[n - 1][k - 1] + binomial[n - 1][k];
+                binomial[n][k] = sum < 0 ? Long.MAX_VALUE : sum;
+            }
+        }
+        return binomial;
+    }
+
+    private static long levelBytes(long positions) {
+        return ((positions + 63) >>> 6) << 3;
+    }
+
+    /**
+     * A hash of the holes and jumps of a geometry, stored in the file to catch a database opened for the wrong board.
+     */
+    private static long fingerprint(BoardGeometry geometry) {
+        long hash = 31L * geometry.getRows() + geometry.getCols();
+        for (int row = 0; row < geometry.getRows(); row++) {
+            for (int col = 0; col < geometry.getCols(); col++) {
+                hash = hash * 31 + (geometry.isHole(row, col) ? 1 : 0);
+            }
+        }
+        for (int jump = 0; jump < geometry.getJumpCount(); jump++) {
+            hash = hash * 31 + geometry.getJumpFrom(jump);
+            hash = hash * 31 + geometry.getJumpOver(jump);
+            hash = hash * 31 + geometry.getJumpTo(jump);
+        }
+        return hash;
+    }
+
+    private static void writeLevel(FileChannel out, long[] level) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long word : level) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                writeFully(out, buffer);
+                buffer.clear();
+            }
+            buffer.putLong(word);
+        }
+        buffer.flip();
+        writeFully(out, buffer);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
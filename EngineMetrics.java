@@ -0,0 +1,229 @@
+package PegGamee;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the hot paths of SqrBoard.
+ *
+ * Metrics are off unless the system property {@code peggame.metrics} is true, and can be
+ * turned on or off at any time with {@link #setEnabled} or over JMX. While off, an
+ * instrumented call costs one volatile read and one comparison. While on, it also reads
+ * the clock twice and records into a {@link LatencyHistogram}, and every move made or
+ * rejected is sent to Flight Recorder as a {@link MoveEvent}.
+ *
+ * Call {@link #register()} once to publish the metrics as {@value #OBJECT_NAME}.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "PegGamee:type=EngineMetrics";
+
+    /** The start time returned by {@link #start()} while metrics are off. */
+    static final long DISABLED = Long.MIN_VALUE;
+
+    static final LatencyHistogram POSSIBLE_MOVES = new LatencyHistogram();
+    static final LatencyHistogram VALID_MOVE = new LatencyHistogram();
+    static final LatencyHistogram MAKE_MOVE = new LatencyHistogram();
+    static final LatencyHistogram GAME_STATE = new LatencyHistogram();
+
+    private static final LongAdder gamesStarted = new LongAdder();
+    private static final LongAdder movesMade = new LongAdder();
+    private static final LongAdder movesRejected = new LongAdder();
+
+    private static volatile boolean enabled = Boolean.getBoolean("peggame.metrics");
+
+    private static final EngineMetrics INSTANCE = new EngineMetrics();
+
+    private EngineMetrics() {
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Registering more than once does nothing.
+     *
+     * @throws IllegalStateException If the MBean cannot be registered.
+     */
+    public static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * @return The MXBean, for use without JMX.
+     */
+    public static EngineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets a start time for an instrumented call.
+     *
+     * @return The current time in nanoseconds, or DISABLED if metrics are off.
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Counts a new game, if metrics are on.
+     */
+    static void gameStarted() {
+        if (enabled) {
+            gamesStarted.increment();
+        }
+    }
+
+    /**
+     * Records a move made or rejected, unless metrics were off when it started.
+     *
+     * @param start    The start time from {@link #start()}.
+     * @param fromRow  The row coordinate of the starting cell.
+     * @param fromCol  The column coordinate of the starting cell.
+     * @param toRow    The row coordinate of the destination cell.
+     * @param toCol    The column coordinate of the destination cell.
+     * @param accepted False if the move was rejected as invalid.
+     * @param pegsLeft The number of pegs on the board afterwards.
+     */
+    static void move(long start, int fromRow, int fromCol, int toRow, int toCol, boolean accepted, int pegsLeft) {
+        if (start == DISABLED) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        MAKE_MOVE.record(latency);
+        (accepted ? movesMade : movesRejected).increment();
+
+        MoveEvent event = new MoveEvent();
+        if (event.shouldCommit()) {
+            event.fromRow = fromRow;
+            event.fromCol = fromCol;
+            event.toRow = toRow;
+            event.toCol = toCol;
+            event.accepted = accepted;
+            event.pegsLeft = pegsLeft;
+            event.latency = latency;
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns metrics on or off. Values already recorded are kept.
+     *
+     * @param enabled True to start recording.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        EngineMetrics.enabled = enabled;
+    }
+
+    @Override
+    public long getGamesStarted() {
+        return gamesStarted.sum();
+    }
+
+    @Override
+    public long getMovesMade() {
+        return movesMade.sum();
+    }
+
+    @Override
+    public long getMovesRejected() {
+        return movesRejected.sum();
+    }
+
+    @Override
+    public LatencySummary getPossibleMovesLatency() {
+        return new LatencySummary(POSSIBLE_MOVES);
+    }
+
+    @Override
+    public LatencySummary getValidMoveLatency() {
+        return new LatencySummary(VALID_MOVE);
+    }
+
+    @Override
+    public LatencySummary getMakeMoveLatency() {
+        return new LatencySummary(MAKE_MOVE);
+    }
+
+    @Override
+    public LatencySummary getGameStateLatency() {
+        return new LatencySummary(GAME_STATE);
+    }
+
+    @Override
+    public void reset() {
+        POSSIBLE_MOVES.reset();
+        VALID_MOVE.reset();
+        MAKE_MOVE.reset();
+        GAME_STATE.reset();
+        gamesStarted.reset();
+        movesMade.reset();
+        movesRejected.reset();
+    }
+
+    /**
+     * A point-in-time summary of a latency histogram. JMX shows it as composite data.
+     */
+    public static final class LatencySummary {
+        private final long count;
+        private final long meanNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+
+        LatencySummary(LatencyHistogram histogram) {
+            this.count = histogram.getCount();
+            this.meanNanos = count == 0 ? 0 : histogram.getTotalNanos() / count;
+            this.p50Nanos = histogram.getPercentile(0.5);
+            this.p99Nanos = histogram.getPercentile(0.99);
+            this.p999Nanos = histogram.getPercentile(0.999);
+            this.maxNanos = histogram.getMaxNanos();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " mean=" + meanNanos + "ns p50=" + p50Nanos + "ns p99=" + p99Nanos
+                    + "ns p99.9=" + p999Nanos + "ns max=" + maxNanos + "ns";
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package PegGamee;
+
+/**
+ * The JMX view of {@link EngineMetrics}, registered as {@value EngineMetrics#OBJECT_NAME}.
+ */
+public interface EngineMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getGamesStarted();
+
+    long getMovesMade();
+
+    long getMovesRejected();
+
+    EngineMetrics.LatencySummary getPossibleMovesLatency();
+
+    EngineMetrics.LatencySummary getValidMoveLatency();
+
+    EngineMetrics.LatencySummary getMakeMoveLatency();
+
+    EngineMetrics.LatencySummary getGameStateLatency();
+
+    /**
+     * Clears every counter and histogram.
+     */
+    void reset();
+}
@@ -1,68 +1,228 @@
 package PegGamee;
 
-import javafx.stage.FileChooser;
-import javafx.stage.Window;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 public class FileUtil {
+
+    // Files at least this large are memory-mapped instead of read through a buffer
+    private static final long MAPPED_THRESHOLD = 1 << 20;
+    // Largest region of a file mapped at once
+    private static final long MAPPED_CHUNK = 1 << 28;
+    private static final int BUFFER_SIZE = 1 << 16;
+
     /**
- * Loads the game board configuration from a specified file. This method presents a file chooser to the user to select a file.
- * The method reads a square grid configuration where 'o' represents an occupied cell.
+ * Loads the game board configuration from a file without any user interaction. Both the text format and the binary
+ * format written by saveGameBoardBinary are accepted; the format is detected from the first bytes. Large files are
+ * memory-mapped and read in place.
  *
- * @param ownerWindow The window that owns the file chooser dialog, typically the main application window.
+ * @param path The board configuration file.
  * @return A 2D boolean array representing the game board, where true indicates an occupied cell.
- * @throws IOException If an I/O error occurs reading from the file or the file cannot be opened.
+ * @throws BoardFormatException If the file is not a valid board configuration.
+ * @throws IOException If an I/O error occurs reading from the file.
  */
+    public static boolean[][] loadGameBoard(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (isBinary(channel)) {
+                return BinaryBoardFormat.read(readFully(channel)).board;
+            }
+            long length = channel.size();
+            if (length < MAPPED_THRESHOLD) {
+                return loadGameBoard(Channels.newInputStream(channel));
+            }
+            BoardTextParser parser = new BoardTextParser();
+            for (long position = 0; position < length; position += MAPPED_CHUNK) {
+                long chunk = Math.min(MAPPED_CHUNK, length - position);
+                parser.feed(channel.map(FileChannel.MapMode.READ_ONLY, position, chunk));
+            }
+            return parser.finish();
+        }
+    }
 
-    
-    public static boolean[][] loadGameBoard(Window ownerWindow) throws IOException {
-        FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Choose Board Configuration File");
-
-        File file = fileChooser.showOpenDialog(ownerWindow); 
-
-        if (file != null ) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                int size = Integer.parseInt(reader.readLine().trim());
-                boolean[][] gameBoard = new boolean[size][size];
-
-                for (int i = 0; i < size; i++) {
-                    String line = reader.readLine();
-                    for (int j = 0; j < line.length(); j++) {
-                        gameBoard[i][j] = (line.charAt(j) == 'o');
-                    }
-                }
-                return gameBoard;
+    /**
+ * Loads the game board configuration from a stream, in either the text or the binary format. The stream is read to its
+ * end but not closed.
+ *
+ * @param in The stream holding the board configuration.
+ * @return A 2D boolean array representing the game board, where true indicates an occupied cell.
+ * @throws BoardFormatException If the stream does not hold a valid board configuration.
+ * @throws IOException If an I/O error occurs reading from the stream.
+ */
+    public static boolean[][] loadGameBoard(InputStream in) throws IOException {
+        return loadGameBoard(in, Integer.MAX_VALUE);
+    }
+
+    /**
+ * Loads the game board configuration from a stream, rejecting a board with more rows or columns than allowed as soon
+ * as its size is read, before any of its cells are stored. Use this for boards from untrusted sources.
+ *
+ * @param in The stream holding the board configuration.
+ * @param maxSize The largest number of rows and of columns accepted.
+ * @return A 2D boolean array representing the game board, where true indicates an occupied cell.
+ * @throws BoardFormatException If the stream does not hold a valid board configuration, or the board is too large.
+ * @throws IOException If an I/O error occurs reading from the stream.
+ */
+    public static boolean[][] loadGameBoard(InputStream in, int maxSize) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(in, 4);
+        if (isBinary(input)) {
+            return BinaryBoardFormat.read(ByteBuffer.wrap(input.readAllBytes()), maxSize).board;
+        }
+        BoardTextParser parser = new BoardTextParser(maxSize);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer chunk = ByteBuffer.wrap(buffer);
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            chunk.clear().limit(read);
+            parser.feed(chunk);
+        }
+        return parser.finish();
+    }
+
+    /**
+ * Loads a saved game, restoring its move history when it was saved in the binary format so the moves can be undone.
+ *
+ * @param path The board configuration file, in either format.
+ * @return The game board.
+ * @throws BoardFormatException If the file is not a valid board configuration, or its saved moves do not lead to the board.
+ * @throws IOException If an I/O error occurs reading from the file.
+ */
+    public static SqrBoard loadSavedGame(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (isBinary(channel)) {
+                BinaryBoardFormat.Contents contents = BinaryBoardFormat.read(readFully(channel));
+                return new SqrBoard(contents.board, contents.history == null ? new int[0] : contents.history);
             }
         }
-        return null; // Return null if file is not selected or reading fails
+        return new SqrBoard(loadGameBoard(path));
+    }
+
+    /**
+ * Saves the game board and, optionally, its move history in the compact binary format: one bit per cell, four bytes
+ * per move and a checksum. loadGameBoard and loadSavedGame read it back.
+ *
+ * @param path The file to save to.
+ * @param gameBoard The 2D boolean array representing the game board to be saved.
+ * @param moveHistory The packed moves that led to the board, or null to save the board only.
+ * @throws IOException If an I/O error occurs writing to the file.
+ */
+    public static void saveGameBoardBinary(Path path, boolean[][] gameBoard, int[] moveHistory) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+            BinaryBoardFormat.write(out, gameBoard, moveHistory);
+        }
+    }
+
+    /**
+ * Writes the game board in the compact binary format to a stream. The stream is flushed but not closed.
+ *
+ * @param out The stream to write to.
+ * @param gameBoard The 2D boolean array representing the game board to be saved.
+ * @param moveHistory The packed moves that led to the board, or null to save the board only.
+ * @throws IOException If an I/O error occurs writing to the stream.
+ */
+    public static void saveGameBoardBinary(OutputStream out, boolean[][] gameBoard, int[] moveHistory) throws IOException {
+        BinaryBoardFormat.write(out, gameBoard, moveHistory);
+    }
+
+    /**
+ * Saves many boards of the same size in one binary archive, replacing the file if it exists. The archive has a single
+ * header and checksum, so each board takes only its bit-packed cells: 7 bytes for a 7x7 board.
+ *
+ * @param path The file to save to.
+ * @param boards The boards to save, all of the same size.
+ * @throws IllegalArgumentException If the boards are not all the same size.
+ * @throws IOException If an I/O error occurs writing to the file.
+ */
+    public static void saveBoardArchive(Path path, Iterable<boolean[][]> boards) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+            BinaryBoardFormat.writeArchive(out, boards);
+        }
+    }
+
+    /**
+ * Loads every board of an archive written by saveBoardArchive, with a single bulk read.
+ *
+ * @param path The archive file.
+ * @return The boards, in the order they were saved.
+ * @throws BoardFormatException If the file is not a valid board archive or is damaged.
+ * @throws IOException If an I/O error occurs reading from the file.
+ */
+    public static List<boolean[][]> loadBoardArchive(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return BinaryBoardFormat.readArchive(readFully(channel));
+        }
     }
 
-    
-    public static void saveGameBoard(Window ownerWindow, boolean[][] gameBoard) throws IOException {
-        /**
- * Saves the current state of the game board to a file. This method presents a file chooser to the user for specifying the file to save to.
+    private static boolean isBinary(FileChannel channel) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(4);
+        while (start.hasRemaining()) {
+            if (channel.read(start, start.position()) < 0)
+                break;
+        }
+        return BinaryBoardFormat.hasMagic(start.array(), start.position());
+    }
+
+    private static boolean isBinary(PushbackInputStream in) throws IOException {
+        byte[] start = new byte[4];
+        int length = in.readNBytes(start, 0, start.length);
+        in.unread(start, 0, length);
+        return BinaryBoardFormat.hasMagic(start, length);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel) throws IOException {
+        long length = channel.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new BoardFormatException("Binary board file is too large");
+        }
+        if (length >= MAPPED_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0)
+                throw new EOFException("Binary board file shrank while it was read");
+        }
+        return buffer.flip();
+    }
+
+    /**
+ * Saves the game board to a file without any user interaction, replacing the file if it exists.
  * The game board is saved with each cell represented as 'o' for occupied and '.' for unoccupied.
  *
- * @param ownerWindow The window that owns the file chooser dialog, typically the main application window.
+ * @param path The file to save to.
  * @param gameBoard The 2D boolean array representing the game board to be saved.
- * @throws IOException If an I/O error occurs writing to the file or the file cannot be saved.
+ * @throws IOException If an I/O error occurs writing to the file.
  */
+    public static void saveGameBoard(Path path, boolean[][] gameBoard) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            saveGameBoard(out, gameBoard);
+        }
+    }
 
-        FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Save your current Gameboard");
-        File file = fileChooser.showSaveDialog(ownerWindow);
-
-        if (file != null) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-                writer.write(gameBoard.length + "\n");
-                for (boolean[] row : gameBoard) {
-                    for (boolean cell : row) {
-                        writer.write(cell ? "o" : ".");
-                    }
-                    writer.newLine();
-                }
+    /**
+ * Writes the game board to a stream in the same format as the file-based save. The stream is flushed but not closed.
+ *
+ * @param out The stream to write to.
+ * @param gameBoard The 2D boolean array representing the game board to be saved.
+ * @throws IOException If an I/O error occurs writing to the stream.
+ */
+    public static void saveGameBoard(OutputStream out, boolean[][] gameBoard) throws IOException {
+        BufferedOutputStream writer = new BufferedOutputStream(out, BUFFER_SIZE);
+        writer.write((gameBoard.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        byte[] line = new byte[gameBoard.length == 0 ? 1 : gameBoard[0].length + 1];
+        for (boolean[] row : gameBoard) {
+            for (int j = 0; j < row.length; j++) {
+                line[j] = (byte) (row[j] ? 'o' : '.');
             }
+            line[row.length] = '\n';
+            writer.write(line, 0, row.length + 1);
         }
+        writer.flush();
     }
 }
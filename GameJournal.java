@@ -0,0 +1,706 @@
+package PegGamee;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * An append-only log of every move of a game, from which any point of the game can be
+ * rebuilt. All numbers are big-endian.
+ *
+ * <pre>
+ * magic     4 bytes  "PEGJ"
+ * version   1 byte   currently 1
+ * reserved  3 bytes
+ * rows      int
+ * cols      int
+ * interval  int      moves between keyframes
+ * reserved  int
+ * board     (rows * cols + 63) / 64 longs, the starting board: bit (cell % 64) of
+ *           long (cell / 64) is set if the cell holds a peg, cells in row-major order
+ * records   int each, a packed move (see PackedMove), with the top bit set if the move
+ *           was taken back rather than made
+ * </pre>
+ *
+ * Every interval records, the board is written to a sidecar keyframe file, the journal's
+ * path with ".idx" added, after a header of the same layout with magic "PEGK". Keyframe i
+ * is the board after (i + 1) * interval records, so a keyframe is found by arithmetic and
+ * seeking to any move replays at most interval records. The keyframe file is only ever
+ * behind the journal, never ahead of it, and records past the last keyframe are replayed
+ * from it; a torn record at the end of the journal is ignored.
+ *
+ * A journal is a BoardListener, so adding it to a SqrBoard logs every move, undo and
+ * redo of that board. Appending only copies the record into memory: full buffers and
+ * keyframes are written in order by a pooled thread, so a board's moves never wait on
+ * the disk. A write that fails stops all later writes and is reported by the next
+ * append, flush or close. Making a move and taking it back both flip the same three cells,
+ * so replaying only checks that each move stays on the board and runs at memory speed.
+ */
+public final class GameJournal implements BoardListener, Flushable, Closeable {
+
+    static final int MAGIC = 0x5045474A; // "PEGJ"
+    static final int KEYFRAME_MAGIC = 0x5045474B; // "PEGK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int UNDO = 0x80000000;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int REPLAY_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel journal;
+    private final FileChannel keyframes;
+    private final int rows;
+    private final int cols;
+    private final int interval;
+    private final int[] steps;
+    private final long[] pegs; // The board after every record written so far
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE); // Records not yet handed to the writer
+    private long records;
+    private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null); // The last write handed off
+
+    private GameJournal(FileChannel journal, FileChannel keyframes, boolean[][] board, int interval) throws IOException {
+        this.journal = journal;
+        this.keyframes = keyframes;
+        this.rows = board.length;
+        this.cols = rows == 0 ? 0 : board[0].length;
+        this.interval = interval;
+        this.steps = new int[] { 1, -1, cols, -cols };
+        this.pegs = toWords(board, cols);
+
+        writeFully(journal, header(MAGIC, rows, cols, interval, pegs));
+        writeFully(keyframes, header(KEYFRAME_MAGIC, rows, cols, interval, null));
+    }
+
+    /**
+     * Starts a new journal, replacing any journal and keyframe file already at the path.
+     *
+     * @param path     The journal file. The keyframes go next to it, in path + ".idx".
+     * @param board    The starting board, where true indicates a peg.
+     * @param interval The number of moves between keyframes.
+     * @return The journal, ready for moves.
+     * @throws IOException If the files cannot be created.
+     */
+    public static GameJournal create(Path path, boolean[][] board, int interval) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The keyframe interval must be positive");
+        }
+        FileChannel journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            FileChannel keyframes = FileChannel.open(keyframePath(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                return new GameJournal(journal, keyframes, board, interval);
+            } catch (IOException | RuntimeException e) {
+                keyframes.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a new journal with a keyframe every {@value #DEFAULT_KEYFRAME_INTERVAL} moves.
+     *
+     * @param path  The journal file.
+     * @param board The starting board, where true indicates a peg.
+     * @return The journal, ready for moves.
+     * @throws IOException If the files cannot be created.
+     */
+    public static GameJournal create(Path path, boolean[][] board) throws IOException {
+        return create(path, board, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Appends a move to the journal. The move must stay on the board, but whether the
+     * cells hold pegs is not checked. The record is written later, see flush.
+     *
+     * @param move The packed move.
+     * @param undo True if the move was taken back rather than made.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    public synchronized void append(int move, boolean undo) throws IOException {
+        if (!isOnBoard(move, rows, cols)) {
+            throw new IllegalArgumentException("Invalid move " + move);
+        }
+        if (writes.isCompletedExceptionally()) {
+            awaitWrites();
+        }
+        flip(pegs, steps, move);
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.putInt(undo ? move | UNDO : move);
+        if (++records % interval == 0) {
+            // Writes run in order, so the keyframe is never ahead of the journal
+            drain();
+            ByteBuffer keyframe = ByteBuffer.allocate(pegs.length * Long.BYTES);
+            keyframe.asLongBuffer().put(pegs);
+            writeLater(keyframes, keyframe);
+        }
+    }
+
+    /**
+     * Does nothing: moves are journaled whole through moveMade.
+     */
+    @Override
+    public void cellChanged(int row, int col, boolean peg) {
+    }
+
+    /**
+     * Appends a move made or taken back on the board this journal listens to.
+     *
+     * @throws UncheckedIOException If an earlier write to the journal failed.
+     */
+    @Override
+    public void moveMade(int move, boolean undo) {
+        try {
+            append(move, undo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the number of records appended so far, moves and undos alike.
+     *
+     * @return The number of records.
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Writes every record appended so far to the journal file and waits until it is written.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        drain();
+        awaitWrites();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                journal.close();
+            } finally {
+                keyframes.close();
+            }
+        }
+    }
+
+    /**
+     * Hands the buffered records to the writer and starts a new buffer.
+     */
+    private void drain() {
+        if (buffer.position() > 0) {
+            writeLater(journal, buffer.flip());
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Queues a write after every write queued before it. Once one fails, the rest are skipped.
+     */
+    private void writeLater(FileChannel channel, ByteBuffer bytes) {
+        writes = writes.thenRunAsync(() -> {
+            try {
+                writeFully(channel, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void awaitWrites() throws IOException {
+        try {
+            writes.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a journal for reading. The journal may still be written to; records appended
+     * afterwards are not seen.
+     *
+     * @param path The journal file.
+     * @return The reader.
+     * @throws BoardFormatException If the file is not a journal.
+     * @throws IOException          If the file cannot be read.
+     */
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    /**
+     * Replays a journal from start to end, telling the visitor about every record.
+     *
+     * @param path    The journal file.
+     * @param visitor Told about every record after it is applied.
+     * @return The number of records replayed.
+     * @throws BoardFormatException If the file is not a journal or holds an invalid move.
+     * @throws IOException          If the file cannot be read.
+     */
+    public static long replay(Path path, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = Header.read(channel, MAGIC, path);
+            Replay replay = new Replay(path, header.rows, header.cols, header.board);
+            long position = header.size();
+            long end = position + header.records(channel.size()) * Integer.BYTES;
+            // Most journals are far smaller than the buffer, and replayAll opens thousands of them
+            ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(REPLAY_BUFFER_SIZE, end - position));
+            while (position < end) {
+                bytes.clear().limit((int) Math.min(bytes.capacity(), end - position));
+                position += readFully(channel, bytes, position);
+                IntBuffer records = bytes.flip().asIntBuffer();
+                while (records.hasRemaining()) {
+                    int record = records.get();
+                    int move = record & ~UNDO;
+                    if (!isOnBoard(move, replay.rows, replay.cols)) {
+                        throw new BoardFormatException("Invalid move " + move + " in record " + replay.index);
+                    }
+                    boolean undo = record != move;
+                    flip(replay.pegs, replay.steps, move);
+                    replay.pegCount += undo ? 1 : -1;
+                    replay.index++;
+                    visitor.visit(replay, move, undo);
+                }
+            }
+            visitor.finished(replay);
+            return replay.index;
+        }
+    }
+
+    /**
+     * Replays many journals at once, spread across a pool. The visitor is called from
+     * several threads, but for any one journal only from one thread at a time.
+     *
+     * @param paths   The journal files.
+     * @param visitor Told about every record of every journal.
+     * @param pool    The pool the journals are spread across.
+     * @return The total number of records replayed.
+     * @throws IOException If a journal cannot be read.
+     */
+    public static long replayAll(Collection<Path> paths, Visitor visitor, ForkJoinPool pool) throws IOException {
+        List<Callable<Long>> tasks = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            tasks.add(() -> replay(path, visitor));
+        }
+        long total = 0;
+        try {
+            for (Future<Long> done : pool.invokeAll(tasks)) {
+                total += done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying journals", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Replay failed", e.getCause());
+        }
+        return total;
+    }
+
+    /**
+     * Receives every record of a replayed journal.
+     */
+    public interface Visitor {
+
+        /**
+         * Called after a record has been applied.
+         *
+         * @param replay The position after the record. It is updated in place, so it must not be kept.
+         * @param move   The packed move.
+         * @param undo   True if the move was taken back rather than made.
+         */
+        void visit(Replay replay, int move, boolean undo);
+
+        /**
+         * Called once the last record has been applied.
+         *
+         * @param replay The final position.
+         */
+        default void finished(Replay replay) {
+        }
+    }
+
+    /**
+     * The position reached while replaying a journal.
+     */
+    public static final class Replay {
+        private final Path path;
+        private final int rows;
+        private final int cols;
+        private final int[] steps;
+        private final long[] pegs;
+        private int pegCount;
+        private long index; // Number of records applied
+
+        Replay(Path path, int rows, int cols, long[] pegs) {
+            this.path = path;
+            this.rows = rows;
+            this.cols = cols;
+            this.steps = new int[] { 1, -1, cols, -cols };
+            this.pegs = pegs;
+            for (long word : pegs)
+                pegCount += Long.bitCount(word);
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        /**
+         * @return The number of records applied so far.
+         */
+        public long getRecordCount() {
+            return index;
+        }
+
+        public int getPegCount() {
+            return pegCount;
+        }
+
+        public boolean isPeg(int row, int col) {
+            int cell = row * cols + col;
+            return (pegs[cell >>> 6] & (1L << cell)) != 0;
+        }
+
+        /**
+         * @return A copy of the board, where true indicates a peg.
+         */
+        public boolean[][] toBoard() {
+            return GameJournal.toBoard(pegs, rows, cols);
+        }
+    }
+
+    /**
+     * Reads a journal at random: the board at any move, or a range of records.
+     */
+    public static final class Reader implements Closeable {
+        private final Path path;
+        private final FileChannel journal;
+        private final FileChannel keyframes; // Null if the keyframe file is missing or does not match
+        private final Header header;
+        private final long records;
+        private final long keyframeCount;
+
+        Reader(Path path) throws IOException {
+            this.path = path;
+            this.journal = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                this.header = Header.read(journal, MAGIC, path);
+                this.records = header.records(journal.size());
+                this.keyframes = openKeyframes(keyframePath(path));
+                long frameBytes = (long) header.board.length * Long.BYTES;
+                this.keyframeCount = keyframes == null ? 0
+                        : Math.min(records / header.interval, (keyframes.size() - HEADER_SIZE) / frameBytes);
+            } catch (IOException | RuntimeException e) {
+                journal.close();
+                throw e;
+            }
+        }
+
+        private FileChannel openKeyframes(Path keyframePath) throws IOException {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(keyframePath, StandardOpenOption.READ);
+            } catch (IOException e) {
+                return null; // Seeking still works, only slower
+            }
+            try {
+                Header frames = Header.read(channel, KEYFRAME_MAGIC, keyframePath);
+                if (frames.rows == header.rows && frames.cols == header.cols && frames.interval == header.interval) {
+                    return channel;
+                }
+            } catch (BoardFormatException e) {
+                // Fall through: a damaged keyframe file is ignored
+            }
+            channel.close();
+            return null;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public int getRows() {
+            return header.rows;
+        }
+
+        public int getCols() {
+            return header.cols;
+        }
+
+        public int getKeyframeInterval() {
+            return header.interval;
+        }
+
+        /**
+         * @return The number of records in the journal when it was opened.
+         */
+        public long getRecordCount() {
+            return records;
+        }
+
+        /**
+         * Rebuilds the board after a number of records, starting from the keyframe before it.
+         *
+         * @param record The number of records to apply, 0 for the starting board.
+         * @return The board, where true indicates a peg.
+         * @throws BoardFormatException If a record before it holds an invalid move.
+         * @throws IOException          If the journal cannot be read.
+         */
+        public boolean[][] seek(long record) throws IOException {
+            if (record < 0 || record > records) {
+                throw new IllegalArgumentException("Record " + record + " is outside the journal's " + records + " records");
+            }
+            long frame = Math.min(record / header.interval, keyframeCount);
+            long[] pegs;
+            if (frame == 0) {
+                pegs = header.board.clone();
+            } else {
+                ByteBuffer bytes = ByteBuffer.allocate(header.board.length * Long.BYTES);
+                readFully(keyframes, bytes, HEADER_SIZE + (frame - 1) * bytes.capacity());
+                pegs = new long[header.board.length];
+                bytes.flip().asLongBuffer().get(pegs);
+            }
+            long first = frame * header.interval;
+            int[] steps = { 1, -1, header.cols, -header.cols };
+            int[] moves = new int[(int) Math.min(BUFFER_SIZE / Integer.BYTES, record - first)];
+            while (first < record) {
+                int count = readRecords(first, moves, 0, (int) Math.min(moves.length, record - first));
+                for (int i = 0; i < count; i++) {
+                    int move = moves[i] & ~UNDO;
+                    if (!isOnBoard(move, header.rows, header.cols)) {
+                        throw new BoardFormatException("Invalid move " + move + " in record " + (first + i));
+                    }
+                    flip(pegs, steps, move);
+                }
+                first += count;
+            }
+            return toBoard(pegs, header.rows, header.cols);
+        }
+
+        /**
+         * Reads raw records, each a packed move with the top bit set if it was taken back.
+         *
+         * @param first   The index of the first record to read.
+         * @param records The array to fill.
+         * @return The number of records read, fewer than the array holds only at the end of the journal.
+         * @throws IOException If the journal cannot be read.
+         */
+        public int readRecords(long first, int[] records) throws IOException {
+            return readRecords(first, records, 0, records.length);
+        }
+
+        /**
+         * Reads raw records into part of an array.
+         *
+         * @param first   The index of the first record to read.
+         * @param records The array to fill.
+         * @param offset  Where in the array to put the first record.
+         * @param length  The largest number of records to read.
+         * @return The number of records read, fewer than length only at the end of the journal.
+         * @throws IOException If the journal cannot be read.
+         */
+        public int readRecords(long first, int[] records, int offset, int length) throws IOException {
+            if (first < 0) {
+                throw new IllegalArgumentException("Negative record index " + first);
+            }
+            int count = (int) Math.max(0, Math.min(length, this.records - first));
+            ByteBuffer bytes = ByteBuffer.allocate(count * Integer.BYTES);
+            readFully(journal, bytes, header.size() + first * Integer.BYTES);
+            bytes.flip().asIntBuffer().get(records, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                journal.close();
+            } finally {
+                if (keyframes != null)
+                    keyframes.close();
+            }
+        }
+    }
+
+    /**
+     * The header shared by the journal and its keyframe file.
+     */
+    private static final class Header {
+        final int rows;
+        final int cols;
+        final int interval;
+        final long[] board; // The starting board, or a board of the right size for keyframe files
+
+        private Header(int rows, int cols, int interval, long[] board) {
+            this.rows = rows;
+            this.cols = cols;
+            this.interval = interval;
+            this.board = board;
+        }
+
+        static Header read(FileChannel channel, int magic, Path path) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.size() < HEADER_SIZE) {
+                throw new BoardFormatException(path + " is not a game journal");
+            }
+            readFully(channel, bytes, 0);
+            bytes.flip();
+            if (bytes.getInt() != magic) {
+                throw new BoardFormatException(path + " is not a game journal");
+            }
+            int version = bytes.get();
+            if (version != VERSION) {
+                throw new BoardFormatException("Unsupported game journal version " + version);
+            }
+            bytes.position(8);
+            int rows = bytes.getInt(), cols = bytes.getInt(), interval = bytes.getInt();
+            if (rows < 1 || cols < 1 || (long) rows * cols * 4 > Integer.MAX_VALUE || interval < 1) {
+                throw new BoardFormatException("Invalid game journal header in " + path);
+            }
+            long[] board = new long[words(rows * cols)];
+            if (magic == MAGIC) {
+                ByteBuffer cells = ByteBuffer.allocate(board.length * Long.BYTES);
+                if (channel.size() < HEADER_SIZE + cells.capacity()) {
+                    throw new BoardFormatException(path + " is truncated");
+                }
+                readFully(channel, cells, HEADER_SIZE);
+                cells.flip().asLongBuffer().get(board);
+            }
+            return new Header(rows, cols, interval, board);
+        }
+
+        long size() {
+            return HEADER_SIZE + (long) board.length * Long.BYTES;
+        }
+
+        long records(long fileSize) {
+            return Math.max(0, (fileSize - size()) / Integer.BYTES);
+        }
+    }
+
+    static Path keyframePath(Path journal) {
+        return journal.resolveSibling(journal.getFileName() + ".idx");
+    }
+
+    private static ByteBuffer header(int magic, int rows, int cols, int interval, long[] board) {
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + (board == null ? 0 : board.length * Long.BYTES));
+        bytes.putInt(magic).put((byte) VERSION).put(new byte[3]).putInt(rows).putInt(cols).putInt(interval).putInt(0);
+        if (board != null) {
+            for (long word : board)
+                bytes.putLong(word);
+        }
+        return bytes.flip();
+    }
+
+    /**
+     * @return True if a packed move starts and lands on a board of the given size.
+     */
+    private static boolean isOnBoard(int move, int rows, int cols) {
+        if (move < 0 || move >= rows * cols * 4) {
+            return false;
+        }
+        int from = move >>> 2, dir = move & 3;
+        int row = from / cols + 2 * PackedMove.ROW_STEP[dir];
+        int col = from % cols + 2 * PackedMove.COL_STEP[dir];
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    /**
+     * Flips the three cells of a move, which both makes it and takes it back.
+     */
+    private static void flip(long[] pegs, int[] steps, int move) {
+        int from = move >>> 2, step = steps[move & 3];
+        int over = from + step, to = over + step;
+        pegs[from >>> 6] ^= 1L << from;
+        pegs[over >>> 6] ^= 1L << over;
+        pegs[to >>> 6] ^= 1L << to;
+    }
+
+    private static int words(int cells) {
+        return Math.max(1, (cells + 63) >>> 6);
+    }
+
+    private static long[] toWords(boolean[][] board, int cols) {
+        long[] pegs = new long[words(board.length * cols)];
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                if (board[row][col])
+                    pegs[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return pegs;
+    }
+
+    private static boolean[][] toBoard(long[] pegs, int rows, int cols) {
+        boolean[][] board = new boolean[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                board[row][col] = (pegs[cell >>> 6] & (1L << cell)) != 0;
+            }
+        }
+        return board;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Reads until the buffer is full, starting at a position of the channel.
+     *
+     * @return The number of bytes read.
+     */
+    private static int readFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        int start = bytes.position();
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position() - start) < 0)
+                throw new EOFException("Game journal shrank while it was read");
+        }
+        return bytes.position() - start;
+    }
+}
@@ -0,0 +1,503 @@
+package PegGamee;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Headless game server: many games at once, square or another shape, behind a small local HTTP API.
+ *
+ * <pre>
+ * POST   /games[?size=N]      start a game from the board in the request body, in any format
+ *                             FileUtil reads, or a full N x N board with the centre empty
+ * POST   /games?board=B       start a full board of another shape: english or european with the
+ *                             centre empty, or triangular[&amp;size=N] with the top hole empty
+ * GET    /games/{id}          the board and its state
+ * POST   /games/{id}/moves    make the move "fromRow fromCol toRow toCol" given in the body
+ * POST   /games/{id}/undo     take back the last move
+ * DELETE /games/{id}          end the game
+ * GET    /stats               the number of games and move latencies
+ * </pre>
+ *
+ * Every response is JSON. Each request runs on its own virtual thread when the JVM has
+ * them (Java 21 and later) and on a cached pool of platform threads otherwise. Games live
+ * in a ConcurrentHashMap, so finding a game never locks; a game's own moves are
+ * serialized on the game, so requests for different games never wait for each other.
+ * Games idle for longer than the timeout are dropped.
+ *
+ * The server listens on the loopback interface only, unless another address to bind is
+ * given explicitly, for example 0.0.0.0 for every interface.
+ *
+ * Usage: {@code java PegGamee.GameServer [port] [idle timeout minutes] [bind address]}
+ */
+public class GameServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_SIZE = 7;
+    private static final int MIN_SIZE = 3;
+    private static final int MAX_SIZE = 1000;
+    private static final int DEFAULT_TRIANGLE_SIZE = 5;
+    private static final int MAX_TRIANGLE_SIZE = 64; // A geometry's jump table grows much faster than the board
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService sweeper;
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final long idleTimeoutNanos;
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+
+    /**
+     * A game and the time it was last used. Requests for the same game lock the session.
+     * Square games are played on a SqrBoard and the other shapes on a GeometryBoard.
+     */
+    private static class Session {
+        final SqrBoard board; // Null unless the game is square
+        final GeometryBoard shaped; // Null if the game is square
+        volatile long lastUsed = System.nanoTime();
+
+        Session(SqrBoard board) {
+            this.board = board;
+            this.shaped = null;
+        }
+
+        Session(GeometryBoard shaped) {
+            this.board = null;
+            this.shaped = shaped;
+        }
+
+        PegGame game() {
+            return board != null ? board : shaped;
+        }
+
+        boolean isValidMove(Location from, Location to) {
+            return board != null ? board.isValidMove(from, to) : shaped.isValidMove(from, to);
+        }
+
+        void undoMove() throws PegGameException {
+            if (board != null) {
+                board.undoMove();
+            } else {
+                shaped.undoMove();
+            }
+        }
+
+        int getPegCount() {
+            return board != null ? board.getPegCount() : shaped.getPegCount();
+        }
+
+        boolean[][] getGameBoard() {
+            return board != null ? board.getGameBoard() : shaped.getGameBoard();
+        }
+
+        boolean isHole(int row, int col) {
+            return board != null || shaped.getGeometry().isHole(row, col);
+        }
+    }
+
+    /**
+     * Constructs a server that listens on the loopback interface. It does not accept requests until started.
+     *
+     * @param port               The local port to listen on, or 0 for any free port.
+     * @param idleTimeoutMinutes Minutes after which an unused game is dropped, at least 1.
+     * @throws IOException If the port cannot be bound.
+     */
+    public GameServer(int port, long idleTimeoutMinutes) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, idleTimeoutMinutes);
+    }
+
+    /**
+     * Constructs a server. It does not accept requests until started.
+     *
+     * @param address            The address to listen on. Anything but a loopback address exposes the games to the network.
+     * @param port               The port to listen on, or 0 for any free port.
+     * @param idleTimeoutMinutes Minutes after which an unused game is dropped, at least 1.
+     * @throws IOException If the port cannot be bound.
+     */
+    public GameServer(InetAddress address, int port, long idleTimeoutMinutes) throws IOException {
+        if (idleTimeoutMinutes < 1) {
+            // Idle games are swept every quarter of the timeout, so a shorter one would spin the sweeper
+            throw new IllegalArgumentException("Idle timeout must be at least a minute, not " + idleTimeoutMinutes);
+        }
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            // Responses are written as headers then body; without this, Nagle's algorithm holds the body back
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        this.workers = newThreadPerTaskExecutor();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.idleTimeoutNanos = TimeUnit.MINUTES.toNanos(idleTimeoutMinutes);
+        server.createContext("/games", this::handleGames);
+        server.createContext("/stats", this::handleStats);
+        server.setExecutor(workers);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long timeout = args.length > 1 ? Long.parseLong(args[1]) : 30;
+        InetAddress address = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+        EngineMetrics.register();
+        GameServer server = new GameServer(address, port, timeout);
+        server.start();
+        System.err.println("Peg game server listening on " + server.server.getAddress());
+    }
+
+    public void start() {
+        long period = idleTimeoutNanos / 4;
+        sweeper.scheduleAtFixedRate(this::dropIdleSessions, period, period, TimeUnit.NANOSECONDS);
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones and drops every game.
+     */
+    public void stop() {
+        server.stop(1);
+        sweeper.shutdownNow();
+        workers.shutdown();
+        sessions.clear();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The number of games in progress.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * One virtual thread per task where the JVM supports them. Looked up reflectively so
+     * the game still builds and runs on Java 17.
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "game-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void dropIdleSessions() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> now - session.lastUsed > idleTimeoutNanos);
+    }
+
+    private void handleGames(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] parts = exchange.getRequestURI().getPath().split("/"); // "", "games", id, action
+            if (parts.length == 2) {
+                if (method.equals("POST")) {
+                    createGame(exchange);
+                } else {
+                    send(exchange, 405, error("Use POST to start a game"));
+                }
+                return;
+            }
+
+            long id;
+            try {
+                id = Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                send(exchange, 404, error("No game " + parts[2]));
+                return;
+            }
+            Session session = sessions.get(id);
+            if (session == null) {
+                send(exchange, 404, error("No game " + id));
+                return;
+            }
+            session.lastUsed = System.nanoTime();
+            String action = parts.length > 3 ? parts[3] : "";
+            if (action.isEmpty() && method.equals("GET")) {
+                String body;
+                synchronized (session) {
+                    body = describe(id, session);
+                }
+                send(exchange, 200, body);
+            } else if (action.isEmpty() && method.equals("DELETE")) {
+                sessions.remove(id);
+                send(exchange, 204, null);
+            } else if (action.equals("moves") && method.equals("POST")) {
+                move(exchange, id, session);
+            } else if (action.equals("undo") && method.equals("POST")) {
+                undo(exchange, id, session);
+            } else {
+                send(exchange, 404, error("Unknown request " + method + " " + exchange.getRequestURI().getPath()));
+            }
+        } catch (RuntimeException e) {
+            send(exchange, 500, error(e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void createGame(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body == null) {
+            send(exchange, 413, error("Board is larger than " + MAX_BODY_BYTES + " bytes"));
+            return;
+        }
+        String shape = queryParameter(exchange.getRequestURI(), "board");
+        if (shape != null) {
+            if (body.length > 0) {
+                send(exchange, 400, error("Name a board shape or upload a square board, not both"));
+                return;
+            }
+            createShapedGame(exchange, shape);
+            return;
+        }
+        boolean[][] board;
+        if (body.length > 0) {
+            try {
+                // Too many rows or columns are rejected from the header, before any cell is unpacked
+                board = FileUtil.loadGameBoard(new ByteArrayInputStream(body), MAX_SIZE);
+            } catch (BoardFormatException e) {
+                send(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            if (!isAllowedSize(board.length) || !isAllowedSize(board[0].length)) {
+                send(exchange, 400, error("Board must have " + MIN_SIZE + " to " + MAX_SIZE + " rows and columns"));
+                return;
+            }
+        } else {
+            int size = DEFAULT_SIZE;
+            String sizeParameter = queryParameter(exchange.getRequestURI(), "size");
+            if (sizeParameter != null) {
+                try {
+                    size = Integer.parseInt(sizeParameter);
+                } catch (NumberFormatException e) {
+                    size = -1;
+                }
+            }
+            if (!isAllowedSize(size)) {
+                send(exchange, 400, error("Size must be a number from " + MIN_SIZE + " to " + MAX_SIZE));
+                return;
+            }
+            board = new boolean[size][size];
+            for (boolean[] row : board) {
+                Arrays.fill(row, true);
+            }
+            board[size / 2][size / 2] = false;
+        }
+        long id = nextId.getAndIncrement();
+        Session session = new Session(new SqrBoard(board));
+        sessions.put(id, session);
+        send(exchange, 201, describe(id, session));
+    }
+
+    private void createShapedGame(HttpExchange exchange, String shape) throws IOException {
+        BoardGeometry geometry;
+        int emptyRow = 3, emptyCol = 3;
+        switch (shape) {
+            case "english":
+                geometry = BoardGeometry.english();
+                break;
+            case "european":
+                geometry = BoardGeometry.european();
+                break;
+            case "triangular":
+                int size = DEFAULT_TRIANGLE_SIZE;
+                String sizeParameter = queryParameter(exchange.getRequestURI(), "size");
+                if (sizeParameter != null) {
+                    try {
+                        size = Integer.parseInt(sizeParameter);
+                    } catch (NumberFormatException e) {
+                        size = -1;
+                    }
+                }
+                if (size < MIN_SIZE || size > MAX_TRIANGLE_SIZE) {
+                    send(exchange, 400, error("Size must be a number from " + MIN_SIZE + " to " + MAX_TRIANGLE_SIZE));
+                    return;
+                }
+                geometry = BoardGeometry.triangular(size);
+                emptyRow = 0;
+                emptyCol = 0;
+                break;
+            default:
+                send(exchange, 400, error("Unknown board " + shape + ", expected english, european or triangular"));
+                return;
+        }
+        long id = nextId.getAndIncrement();
+        Session session = new Session(new GeometryBoard(geometry, geometry.fullBoard(emptyRow, emptyCol)));
+        sessions.put(id, session);
+        send(exchange, 201, describe(id, session));
+    }
+
+    private static boolean isAllowedSize(int size) {
+        return size >= MIN_SIZE && size <= MAX_SIZE;
+    }
+
+    private void move(HttpExchange exchange, long id, Session session) throws IOException {
+        long start = System.nanoTime();
+        byte[] body = readBody(exchange.getRequestBody());
+        String[] numbers = body == null ? new String[0] : new String(body, StandardCharsets.US_ASCII).trim().split("[\\s,]+");
+        int[] cells = new int[4];
+        try {
+            if (numbers.length != 4) {
+                throw new NumberFormatException();
+            }
+            for (int i = 0; i < 4; i++) {
+                cells[i] = Integer.parseInt(numbers[i]);
+            }
+        } catch (NumberFormatException e) {
+            send(exchange, 400, error("Expected \"fromRow fromCol toRow toCol\""));
+            return;
+        }
+        Location from = new Location(cells[0], cells[1]);
+        Location to = new Location(cells[2], cells[3]);
+        String response;
+        synchronized (session) {
+            if (!session.isValidMove(from, to)) {
+                response = null;
+            } else {
+                try {
+                    session.game().makeMove(new Move(from, to));
+                } catch (PegGameException e) {
+                    throw new IllegalStateException("Move was checked but rejected", e);
+                }
+                response = describe(id, session);
+            }
+        }
+        moveLatency.record(System.nanoTime() - start);
+        if (response == null) {
+            send(exchange, 422, error("Invalid move"));
+        } else {
+            send(exchange, 200, response);
+        }
+    }
+
+    private void undo(HttpExchange exchange, long id, Session session) throws IOException {
+        String response;
+        synchronized (session) {
+            try {
+                session.undoMove();
+                response = describe(id, session);
+            } catch (PegGameException e) {
+                response = null;
+            }
+        }
+        if (response == null) {
+            send(exchange, 409, error("No move to undo"));
+        } else {
+            send(exchange, 200, response);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            EngineMetrics.LatencySummary moves = new EngineMetrics.LatencySummary(moveLatency);
+            send(exchange, 200, "{\"sessions\":" + sessions.size()
+                    + ",\"moves\":" + moves.getCount()
+                    + ",\"moveLatencyNanos\":{\"mean\":" + moves.getMeanNanos()
+                    + ",\"p50\":" + moves.getP50Nanos()
+                    + ",\"p99\":" + moves.getP99Nanos()
+                    + ",\"p999\":" + moves.getP999Nanos()
+                    + ",\"max\":" + moves.getMaxNanos() + "}}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes a game as JSON: its id, state, peg count and one string per row, 'o' for a peg, '.' for
+     * an empty hole and a space for a cell that is not a hole.
+     */
+    private static String describe(long id, Session session) {
+        boolean[][] board = session.getGameBoard();
+        int cols = board.length == 0 ? 0 : board[0].length;
+        StringBuilder json = new StringBuilder(64 + board.length * (cols + 3));
+        json.append("{\"id\":").append(id)
+            .append(",\"state\":\"").append(session.game().getGameState()).append('"')
+            .append(",\"pegs\":").append(session.getPegCount())
+            .append(",\"board\":[");
+        for (int row = 0; row < board.length; row++) {
+            if (row > 0)
+                json.append(',');
+            json.append('"');
+            for (int col = 0; col < cols; col++) {
+                json.append(board[row][col] ? 'o' : session.isHole(row, col) ? '.' : ' ');
+            }
+            json.append('"');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder(message.length() + 12).append("{\"error\":\"");
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return pair.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The whole body, or null if it is larger than MAX_BODY_BYTES.
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        return body.length > MAX_BODY_BYTES ? null : body;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package PegGamee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A peg board of any shape, described by a BoardGeometry.
+ *
+ * Moves are checked and listed through the geometry's jump table, so there is no bounds
+ * arithmetic anywhere. Like SqrBoard, the board keeps its peg count and the set of legal
+ * jumps up to date on every move, so the game state takes constant time. A move only
+ * re-checks the jumps that touch the three holes it changes.
+ */
+public class GeometryBoard implements PegGame {
+
+    private final BoardGeometry geometry;
+    private final int[] jumps; // The geometry's table: from, over, to for each jump
+    private final int[] touching;
+    private final int[] touchStart;
+    private final boolean[] pegs; // Indexed by row-major cell index
+    private final boolean[] legal; // Indexed by jump
+    private int legalCount;
+    private int pegCount;
+    private int[] history = new int[16]; // Jumps made so far, oldest first
+    private int historySize;
+    private GameState gameState = GameState.NOT_STARTED;
+
+    /**
+     * Constructs a board.
+     *
+     * @param geometry The shape of the board.
+     * @param board    The pegs, where true indicates a peg, on a grid the size of the geometry.
+     *                 Pegs on grid cells that are not holes are ignored.
+     */
+    public GeometryBoard(BoardGeometry geometry, boolean[][] board) {
+        if (board.length != geometry.getRows() || (board.length > 0 && board[0].length != geometry.getCols())) {
+            throw new IllegalArgumentException("Expected a " + geometry.getRows() + "x" + geometry.getCols() + " board");
+        }
+        this.geometry = geometry;
+        this.jumps = geometry.jumps();
+        this.touching = geometry.touching();
+        this.touchStart = geometry.touchStart();
+        int cols = geometry.getCols();
+        this.pegs = new boolean[geometry.getRows() * cols];
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (board[row][col] && geometry.isHole(row, col)) {
+                    pegs[row * cols + col] = true;
+                    pegCount++;
+                }
+            }
+        }
+        this.legal = new boolean[geometry.getJumpCount()];
+        for (int jump = 0; jump < legal.length; jump++) {
+            refreshJump(jump);
+        }
+    }
+
+    /**
+     * Gets the current game state based on the number of pegs and legal jumps.
+     *
+     * @return The current game state.
+     */
+    @Override
+    public GameState getGameState() {
+        if (pegCount == 1) {
+            gameState = GameState.WON;
+        } else if (legalCount == 0) {
+            gameState = GameState.STALEMATE;
+        } else {
+            gameState = GameState.IN_PROGRESS;
+        }
+        return gameState;
+    }
+
+    /**
+     * Checks if a move from one location to another is a legal jump on this board.
+     *
+     * @param from The starting location of the move.
+     * @param to   The destination location of the move.
+     * @return True if the move is valid, false otherwise.
+     */
+    public boolean isValidMove(Location from, Location to) {
+        int jump = findJump(from, to);
+        return jump >= 0 && legal[jump];
+    }
+
+    /**
+     * Gets every legal move on the board, in jump table order.
+     *
+     * @return A collection of possible moves.
+     */
+    @Override
+    public Collection<Move> getPossibleMoves() {
+        List<Move> moves = new ArrayList<>(legalCount);
+        for (int jump = 0; jump < legal.length; jump++) {
+            if (legal[jump])
+                moves.add(toMove(jump));
+        }
+        return moves;
+    }
+
+    /**
+     * Writes every legal jump, as an index into the geometry's jump table, into the given array.
+     * Nothing is allocated.
+     *
+     * @param moves The array to fill, large enough for every legal jump.
+     * @return The number of jumps written.
+     */
+    public int getPossibleJumps(int[] moves) {
+        int count = 0;
+        for (int jump = 0; jump < legal.length; jump++) {
+            if (legal[jump])
+                moves[count++] = jump;
+        }
+        return count;
+    }
+
+    /**
+     * Makes a move on the board.
+     *
+     * @param move The move to be made.
+     * @throws PegGameException If the move is invalid.
+     */
+    @Override
+    public void makeMove(Move move) throws PegGameException {
+        makeJump(findJump(move.getFrom(), move.getTo()));
+    }
+
+    /**
+     * Makes a jump from the geometry's jump table.
+     *
+     * @param jump The index of the jump.
+     * @throws PegGameException If the jump is not legal on the current board.
+     */
+    public void makeJump(int jump) throws PegGameException {
+        if (jump < 0 || jump >= legal.length || !legal[jump]) {
+            throw new PegGameException("Invalid move");
+        }
+        jump(jump, false);
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+        }
+        history[historySize++] = jump;
+        getGameState();
+    }
+
+    /**
+     * Takes back a jump: the peg returns to its starting hole and the jumped-over peg is put back.
+     * Taking back the last jump made is the same as undoMove(); taking back any other jump clears
+     * the history, since it no longer leads to the current board.
+     *
+     * @param jump The index of the jump.
+     * @throws PegGameException If the jump cannot have been the last one made.
+     */
+    public void undoJump(int jump) throws PegGameException {
+        if (jump < 0 || jump >= legal.length
+                || pegs[jumps[3 * jump]] || pegs[jumps[3 * jump + 1]] || !pegs[jumps[3 * jump + 2]]) {
+            throw new PegGameException("Invalid move");
+        }
+        jump(jump, true);
+        if (historySize > 0 && history[historySize - 1] == jump) {
+            historySize--;
+        } else {
+            historySize = 0;
+        }
+        getGameState();
+    }
+
+    /**
+     * Takes back the last jump made.
+     *
+     * @return The index of the jump that was taken back.
+     * @throws PegGameException If no jump has been made.
+     */
+    public int undoMove() throws PegGameException {
+        if (historySize == 0) {
+            throw new PegGameException("No move to undo");
+        }
+        int jump = history[--historySize];
+        jump(jump, true);
+        getGameState();
+        return jump;
+    }
+
+    public boolean canUndo() {
+        return historySize > 0;
+    }
+
+    /**
+     * Converts a jump to a move between two locations.
+     *
+     * @param jump The index of the jump.
+     * @return The move.
+     */
+    public Move toMove(int jump) {
+        int cols = geometry.getCols();
+        int from = jumps[3 * jump], to = jumps[3 * jump + 2];
+        return new Move(new Location(from / cols, from % cols), new Location(to / cols, to % cols));
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    public int getPegCount() {
+        return pegCount;
+    }
+
+    /**
+     * Checks if a hole holds a peg.
+     *
+     * @param row The row coordinate.
+     * @param col The column coordinate.
+     * @return True if the cell is a hole holding a peg.
+     */
+    public boolean isPeg(int row, int col) {
+        return geometry.isHole(row, col) && pegs[row * geometry.getCols() + col];
+    }
+
+    /**
+     * Gets a copy of the board.
+     *
+     * @return The board, where true indicates a peg. Cells that are not holes are false.
+     */
+    public boolean[][] getGameBoard() {
+        int cols = geometry.getCols();
+        boolean[][] board = new boolean[geometry.getRows()][cols];
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                board[row][col] = pegs[row * cols + col];
+            }
+        }
+        return board;
+    }
+
+    private int findJump(Location from, Location to) {
+        if (!geometry.isHole(from.getRow(), from.getCol()) || !geometry.isHole(to.getRow(), to.getCol())) {
+            return -1;
+        }
+        int cols = geometry.getCols();
+        return geometry.findJump(from.getRow() * cols + from.getCol(), to.getRow() * cols + to.getCol());
+    }
+
+    private void jump(int jump, boolean undo) {
+        int from = jumps[3 * jump], over = jumps[3 * jump + 1], to = jumps[3 * jump + 2];
+        pegs[from] = undo;
+        pegs[over] = undo;
+        pegs[to] = !undo;
+        pegCount += undo ? 1 : -1;
+        refreshJumpsTouching(from);
+        refreshJumpsTouching(over);
+        refreshJumpsTouching(to);
+    }
+
+    private void refreshJumpsTouching(int cell) {
+        for (int i = touchStart[cell]; i < touchStart[cell + 1]; i++) {
+            refreshJump(touching[i]);
+        }
+    }
+
+    private void refreshJump(int jump) {
+        boolean now = pegs[jumps[3 * jump]] && pegs[jumps[3 * jump + 1]] && !pegs[jumps[3 * jump + 2]];
+        if (legal[jump] != now) {
+            legal[jump] = now;
+            legalCount += now ? 1 : -1;
+        }
+    }
+
+    /**
+     * Converts the board to text: 'o' for a peg, '.' for an empty hole and a space for cells that are not holes.
+     *
+     * @return A string representation of the board.
+     */
+    @Override
+    public String toString() {
+        int rows = geometry.getRows(), cols = geometry.getCols();
+        StringBuilder text = new StringBuilder(rows * (2 * cols + 1));
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                text.append(!geometry.isHole(row, col) ? ' ' : pegs[row * cols + col] ? 'o' : '.').append(' ');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package PegGamee;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Searches for the best next move on a background thread, so the caller's thread never waits.
+ *
+ * Each call to {@link #analyze} cancels the search for the previous position and starts a new
+ * one. The search deepens one move at a time, looking for the longest line of moves, which is
+ * the line that leaves the fewest pegs. After every depth the best move so far is published, so
+ * a first hint is ready almost at once and improves while the search goes deeper. A search that
+ * reaches the time limit stops where it is and leaves the hint of the last depth it completed.
+ * Results for a position that is no longer current are dropped.
+ */
+public class HintEngine {
+
+    // Stop searching after this long even if the best line is not proven yet
+    private static final long TIME_LIMIT_NANOS = 5_000_000_000L;
+    private static final int TABLE_BITS = 20;
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * A suggested move and what it is expected to lead to.
+     */
+    public static class Hint {
+        private final Move move;
+        private final int pegsLeft;
+        private final boolean proven;
+
+        Hint(Move move, int pegsLeft, boolean proven) {
+            this.move = move;
+            this.pegsLeft = pegsLeft;
+            this.proven = proven;
+        }
+
+        /**
+         * @return The suggested move, or null if no move is possible.
+         */
+        public Move getMove() {
+            return move;
+        }
+
+        /**
+         * @return The fewest pegs that can be left after the suggested move, as far as the search has looked.
+         */
+        public int getPegsLeft() {
+            return pegsLeft;
+        }
+
+        /**
+         * @return True if the search is complete and no better line exists.
+         */
+        public boolean isProven() {
+            return proven;
+        }
+    }
+
+    private final Consumer<Hint> listener;
+    private final Executor publisher;
+    private final ExecutorService searcher;
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> current;
+    // Longest line found from a position, times two, plus one if that length is exact.
+    // Only the search thread uses these, and entries stay valid from one search to the next.
+    private final long[] tableKeys = new long[1 << TABLE_BITS];
+    private final int[] tableValues = new int[1 << TABLE_BITS];
+
+    /**
+     * Constructs a hint engine.
+     *
+     * @param listener  Receives every hint for the current position.
+     * @param publisher Runs the listener, for example Platform::runLater to get hints on the JavaFX thread.
+     */
+    public HintEngine(Consumer<Hint> listener, Executor publisher) {
+        this.listener = listener;
+        this.publisher = publisher;
+        this.searcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hint-engine");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts looking for the best move on a board, dropping any search still running.
+     * The board is copied, so it may change as soon as this returns.
+     *
+     * @param board The board, where true indicates a peg.
+     */
+    public synchronized void analyze(boolean[][] board) {
+        long id = generation.incrementAndGet();
+        if (current != null) {
+            current.cancel(true);
+        }
+        BitBoard position = new BitBoard(board);
+        current = searcher.submit(() -> new Search(position, id).run());
+    }
+
+    /**
+     * Stops the current search and drops its results.
+     */
+    public synchronized void cancel() {
+        generation.incrementAndGet();
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+
+    /**
+     * Stops the background thread. The engine cannot be used afterwards.
+     */
+    public void shutdown() {
+        cancel();
+        searcher.shutdownNow();
+    }
+
+    private void publish(long id, Hint hint) {
+        publisher.execute(() -> {
+            if (generation.get() == id) {
+                listener.accept(hint);
+            }
+        });
+    }
+
+    /**
+     * An iterative-deepening search for the longest line of moves from one position.
+     */
+    private class Search {
+        private final BitBoard board;
+        private final long id;
+        private final int[][] moveBuffers;
+        private final int startPegs;
+        private final long deadline = System.nanoTime() + TIME_LIMIT_NANOS;
+        private long nodes;
+        private boolean stopped; // Interrupted or out of time
+
+        Search(BitBoard board, long id) {
+            this.board = board;
+            this.id = id;
+            this.startPegs = board.pegCount();
+            this.moveBuffers = new int[startPegs + 1][];
+        }
+
+        void run() {
+            int pegs = startPegs;
+            int[] moves = moveBuffer(0);
+            int count = board.getPossibleMoves(moves);
+            if (count == 0) {
+                publish(id, new Hint(null, pegs, true));
+                return;
+            }
+            for (int limit = 1; limit < pegs; limit++) {
+                int bestMove = -1, bestLength = -1;
+                for (int i = 0; i < count && !stopped; i++) {
+                    board.makeMove(moves[i]);
+                    int length = 1 + longestLine(1, limit - 1);
+                    board.undoMove(moves[i]);
+                    if (length > bestLength) {
+                        bestLength = length;
+                        bestMove = moves[i];
+                    }
+                }
+                if (stopped) {
+                    return;
+                }
+                boolean proven = bestLength < limit || pegs - bestLength == 1;
+                publish(id, new Hint(board.toMove(bestMove), pegs - bestLength, proven));
+                if (proven || System.nanoTime() - deadline > 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return The length of the longest line of at most limit moves from the current board.
+         */
+        private int longestLine(int depth, int limit) {
+            if (stopped) {
+                return 0;
+            }
+            // Leaves count too: on a big board one node can have hundreds of thousands of them
+            if (++nodes % CHECK_INTERVAL == 0
+                    && (Thread.currentThread().isInterrupted() || System.nanoTime() - deadline > 0)) {
+                stopped = true;
+                return 0;
+            }
+            if (limit == 0) {
+                return 0;
+            }
+            long key = board.canonicalKey();
+            int slot = (int) (key ^ (key >>> 32)) & (tableKeys.length - 1);
+            if (tableKeys[slot] == key && tableValues[slot] != 0) {
+                int value = tableValues[slot];
+                int length = value >>> 1;
+                if ((value & 1) != 0 || length >= limit) {
+                    return Math.min(length, limit);
+                }
+            }
+
+            int[] moves = moveBuffer(depth);
+            int count = board.getPossibleMoves(moves);
+            int best = 0;
+            for (int i = 0; i < count && best < limit; i++) {
+                board.makeMove(moves[i]);
+                best = Math.max(best, 1 + longestLine(depth + 1, limit - 1));
+                board.undoMove(moves[i]);
+            }
+            if (!stopped) {
+                tableKeys[slot] = key;
+                tableValues[slot] = best << 1 | (best < limit ? 1 : 0);
+            }
+            return best;
+        }
+
+        /**
+         * Gets the move buffer for a depth, large enough for every move of any position there.
+         * A move starts on a peg and lands on an empty cell, and each cell takes part in at most
+         * four moves either way, so a big board needs little room near the start or the end.
+         */
+        private int[] moveBuffer(int depth) {
+            int[] moves = moveBuffers[depth];
+            if (moves == null) {
+                int pegs = startPegs - depth;
+                int empty = board.getRows() * board.getCols() - pegs;
+                moves = moveBuffers[depth] = new int[4 * Math.min(pegs, empty)];
+            }
+            return moves;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package PegGamee;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for one move made on a SqrBoard, or one move it rejected.
+ * Emitted only while {@link EngineMetrics} is enabled and a recording includes it.
+ */
+@Name("PegGamee.Move")
+@Label("Peg Move")
+@Category("Peg Game")
+@Description("A move made on a board, or rejected as invalid")
+final class MoveEvent extends jdk.jfr.Event {
+
+    @Label("From Row")
+    int fromRow;
+
+    @Label("From Column")
+    int fromCol;
+
+    @Label("To Row")
+    int toRow;
+
+    @Label("To Column")
+    int toCol;
+
+    @Label("Accepted")
+    boolean accepted;
+
+    @Label("Pegs Left")
+    int pegsLeft;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
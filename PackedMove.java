@@ -0,0 +1,111 @@
+package PegGamee;
+
+/**
+ * Encodes a move as a single int so it can be stored in primitive arrays without
+ * allocating. The value is the row-major index of the starting cell times four plus
+ * the direction of the jump. SqrBoard and BitBoard use the same encoding, and list
+ * moves in the same order: by starting cell, then right, left, down, up.
+ */
+public final class PackedMove {
+
+    public static final int RIGHT = 0;
+    public static final int LEFT = 1;
+    public static final int DOWN = 2;
+    public static final int UP = 3;
+
+    // Row and column offsets of the jumped-over cell in each direction
+    static final int[] ROW_STEP = { 0, 0, 1, -1 };
+    static final int[] COL_STEP = { 1, -1, 0, 0 };
+
+    private PackedMove() {
+    }
+
+    /**
+     * Packs a move.
+     *
+     * @param from The row-major index of the starting cell.
+     * @param dir  The direction of the jump.
+     * @return The packed move.
+     */
+    public static int encode(int from, int dir) {
+        return from << 2 | dir;
+    }
+
+    /**
+     * @param move A packed move.
+     * @return The row-major index of the starting cell.
+     */
+    public static int fromIndex(int move) {
+        return move >>> 2;
+    }
+
+    /**
+     * @param move A packed move.
+     * @return The direction of the jump.
+     */
+    public static int direction(int move) {
+        return move & 3;
+    }
+
+    /**
+     * Gets the direction of a jump between two locations, assuming they are two cells apart in a straight line.
+     *
+     * @param from The starting location.
+     * @param to   The destination location.
+     * @return The direction of the jump.
+     */
+    public static int direction(Location from, Location to) {
+        if (from.getRow() == to.getRow())
+            return to.getCol() > from.getCol() ? RIGHT : LEFT;
+        return to.getRow() > from.getRow() ? DOWN : UP;
+    }
+
+    /**
+     * Checks that a move history leads to a board, by taking the moves back from the last
+     * one on a copy of the board. Each move must stay on the board, and before it is taken
+     * back its starting and jumped-over cells must be empty and its landing cell must hold a peg.
+     *
+     * @param board   The board the history should lead to, where true indicates a peg.
+     * @param history The packed moves, oldest first.
+     * @return The index in the history of the first move found not to fit, or -1 if they all do.
+     */
+    static int findInvalidMove(boolean[][] board, int[] history) {
+        int rows = board.length;
+        int cols = rows == 0 ? 0 : board[0].length;
+        boolean[][] cells = new boolean[rows][];
+        for (int row = 0; row < rows; row++) {
+            cells[row] = board[row].clone();
+        }
+        for (int i = history.length - 1; i >= 0; i--) {
+            int move = history[i];
+            if (move < 0 || move >= 4 * rows * cols)
+                return i;
+            int from = fromIndex(move), dir = direction(move);
+            int row = from / cols, col = from % cols;
+            int midRow = row + ROW_STEP[dir], midCol = col + COL_STEP[dir];
+            int toRow = midRow + ROW_STEP[dir], toCol = midCol + COL_STEP[dir];
+            if (toRow < 0 || toRow >= rows || toCol < 0 || toCol >= cols
+                    || cells[row][col] || cells[midRow][midCol] || !cells[toRow][toCol])
+                return i;
+            cells[row][col] = true;
+            cells[midRow][midCol] = true;
+            cells[toRow][toCol] = false;
+        }
+        return -1;
+    }
+
+    /**
+     * Converts a packed move back to a move object.
+     *
+     * @param move A packed move.
+     * @param cols The number of columns of the board.
+     * @return The equivalent move.
+     */
+    public static Move toMove(int move, int cols) {
+        int from = fromIndex(move);
+        int dir = direction(move);
+        int row = from / cols, col = from % cols;
+        return new Move(new Location(row, col),
+                        new Location(row + 2 * ROW_STEP[dir], col + 2 * COL_STEP[dir]));
+    }
+}
@@ -1,6 +1,7 @@
 package PegGamee;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -19,20 +20,34 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.File;
+import java.io.IOException;
 
 public class PegGameGUI extends Application {
 
+    // Boards with more cells than this are drawn on a canvas instead of with one button per cell
+    private static final int CANVAS_THRESHOLD = 2500;
+
     // Instance variables for game components and state
     private SqrBoard gameBoard; 
     private Location selectedPegLocation = null; // Tracks the currently selected peg location in the game
     private GridPane gridPane = new GridPane(); // Layout for placing game pegs
     public Label gameStateLabel; // Label to display current game state
+    public Label hintLabel; // Label to display the suggested next move
     public BorderPane bPane = new BorderPane(); // Main container for UI elements
     public Label TopLabel; // Top label to display the game's title
     private Button[][] pegButtons; // 2D array to hold references to buttons representing pegs
+    private Circle[][] pegCircles; // The circle shown on each button, recolored when its cell changes
+    private CanvasBoardView canvasView; // Used instead of the buttons for large boards
     private boolean GameOver = false; // Flag to check if the game is over
     private boolean isPaused = false; // Flag to check if the game is paused
+    private HintEngine hintEngine; // Searches for the best move in the background
+    private HintEngine.Hint latestHint; // Best move found so far for the current board
+    private boolean showHints = false; // Flag to check if hints are shown
 
     @Override
     public void start(Stage primaryStage) {
@@ -44,21 +59,31 @@ public class PegGameGUI extends Application {
         TopLabel = new Label("Let's play the PEG GAME");
         setLabel(TopLabel, 45 , Color.ALICEBLUE); 
         gameStateLabel = new Label();
-        VBox Info= new VBox(5,TopLabel,gameStateLabel); 
+        hintLabel = new Label();
+        VBox Info= new VBox(5,TopLabel,gameStateLabel,hintLabel); 
         Info.setAlignment(Pos.TOP_CENTER);
         setLabel(gameStateLabel, 30, Color.LAVENDER); 
+        setLabel(hintLabel, 20, Color.LAVENDER); 
+        hintEngine = new HintEngine(this::receiveHint, Platform::runLater); // Hints arrive on the JavaFX thread
+        EngineMetrics.register(); // Engine counters and latencies, see EngineMetrics
         Button loadButton = new Button("Load Game"); // Button to load a saved game
         Button saveButton = new Button("Save Game"); // Button to save the current game
         Button pauseButton = new Button("Pause/Resume"); // Button to toggle pause/resume
+        Button undoButton = new Button("Undo"); // Button to take back the last move
+        Button redoButton = new Button("Redo"); // Button to make a taken back move again
+        Button hintButton = new Button("Hint"); // Button to show or hide the suggested move
         Button quitButton = new Button("Quit Game"); // Button to quit the game
 
         // Event handlers for buttons
         loadButton.setOnAction(e -> loadGame(primaryStage));
         saveButton.setOnAction(e -> saveGame(primaryStage)); 
         pauseButton.setOnAction(e -> PauseOrResume());
+        undoButton.setOnAction(e -> undoMove());
+        redoButton.setOnAction(e -> redoMove());
+        hintButton.setOnAction(e -> toggleHints());
         quitButton.setOnAction(e -> quitGame(primaryStage));
 
-        HBox buttonBox = new HBox(20, loadButton, saveButton, pauseButton, quitButton); 
+        HBox buttonBox = new HBox(20, loadButton, saveButton, undoButton, redoButton, hintButton, pauseButton, quitButton); 
         buttonBox.setAlignment(Pos.CENTER);
 
         // Setting positions of components in the BorderPane
@@ -89,15 +114,31 @@ public class PegGameGUI extends Application {
  */
 
         try {
-            boolean[][] boardArray = FileUtil.loadGameBoard(primaryStage);
+            boolean[][] boardArray = chooseAndLoadBoard(primaryStage);
             if (boardArray != null) {
                 gameBoard = new SqrBoard(boardArray);
-                pegButtons = new Button[boardArray.length][boardArray[0].length];
-                displayGameBoard(); // Display the loaded game board
+                selectedPegLocation = null;
+                if (boardArray.length * boardArray[0].length > CANVAS_THRESHOLD) {
+                    pegButtons = null;
+                    pegCircles = null;
+                    canvasView = new CanvasBoardView(boardArray);
+                    canvasView.setOnCellClicked(this::handlePegButtonClick);
+                    canvasView.setDisable(isPaused);
+                    gameBoard.addBoardListener(canvasView);
+                    bPane.setCenter(canvasView);
+                } else {
+                    canvasView = null;
+                    pegButtons = new Button[boardArray.length][boardArray[0].length];
+                    pegCircles = new Circle[boardArray.length][boardArray[0].length];
+                    displayGameBoard(); // Display the loaded game board
+                    gameBoard.addBoardListener(this::repaintCell); // Moves only recolor the cells they change
+                    bPane.setCenter(gridPane);
+                }
+                requestHint();
             }
         } catch (Exception ex) {
             System.err.println("Error loading the game board.");
-            showError("Invalid file format selected");
+            showError(ex instanceof BoardFormatException ? ex.getMessage() : "Invalid file format selected");
 
         }
     }
@@ -109,7 +150,7 @@ public class PegGameGUI extends Application {
  */
 
         try {
-            FileUtil.saveGameBoard(primaryStage, gameBoard.getGameBoard());
+            chooseAndSaveBoard(primaryStage, gameBoard.getGameBoard());
         } catch (Exception ex) {
             System.err.println("Error saving the game board.");
             showError("Invalid File");
@@ -121,11 +162,7 @@ public class PegGameGUI extends Application {
  *  Pauses  and resumes state of the game, disabling or enabling interaction with the game board.
  */
         isPaused = !isPaused; 
-        for (Button[] row : pegButtons) {
-            for (Button btn : row) {
-                btn.setDisable(isPaused); 
-            }
-        }
+        setBoardDisabled(isPaused);
         gameStateLabel.setText(isPaused ? "Game Paused" : "Game In Progress"); // Update label based on state
     }
 
@@ -158,6 +195,7 @@ public class PegGameGUI extends Application {
         boolean isPeg = gameBoard.getGameBoard()[row][col];
         Circle circle = new Circle(25, isPeg ? Color.BLACK : Color.WHITE); // Set color based on peg presence
         button.setGraphic(circle);
+        pegCircles[row][col] = circle;
         button.setPrefSize(40, 40);
         button.setOnAction(e -> handlePegButtonClick(row, col));
         if (isPaused) button.setDisable(true); // Disable if game is paused
@@ -178,7 +216,6 @@ public class PegGameGUI extends Application {
         } else if (selectedPegLocation != null) {
             try {
                 gameBoard.makeMove(new Move(selectedPegLocation, new Location(row, col)));
-                displayGameBoard();
                 updateGameStateLabel();
             } catch (PegGameException e) {
                 showError(e.getMessage());
@@ -187,6 +224,52 @@ public class PegGameGUI extends Application {
         }
     }
 
+    private void undoMove() {
+        /**
+ * Takes back the last move. The board listener repaints the three cells it changed.
+ */
+
+        if (gameBoard == null || isPaused || !gameBoard.canUndo()) return;
+        try {
+            deselectPeg();
+            gameBoard.undoMove();
+            if (GameOver) {
+                // Taking back the final move reopens the game
+                GameOver = false;
+                setBoardDisabled(false);
+            }
+            updateGameStateLabel();
+        } catch (PegGameException e) {
+            showError(e.getMessage());
+        }
+    }
+
+    private void redoMove() {
+        /**
+ * Makes the last taken back move again. The board listener repaints the three cells it changed.
+ */
+
+        if (gameBoard == null || isPaused || GameOver || !gameBoard.canRedo()) return;
+        try {
+            deselectPeg();
+            gameBoard.redoMove();
+            updateGameStateLabel();
+        } catch (PegGameException e) {
+            showError(e.getMessage());
+        }
+    }
+
+    private void repaintCell(int row, int col, boolean isPeg) {
+        /**
+ * Recolors the circle of a cell that gained or lost its peg.
+ * @param row The row index of the changed cell.
+ * @param col The column index of the changed cell.
+ * @param isPeg True if the cell now holds a peg.
+ */
+
+        pegCircles[row][col].setFill(isPeg ? Color.BLACK : Color.WHITE);
+    }
+
     private void highlightPeg(int row, int col) {
         /**
  * Highlights a peg on the board to indicate it is selected.
@@ -195,8 +278,11 @@ public class PegGameGUI extends Application {
  */
 
         
-        Circle circle = new Circle(25, Color.YELLOW);
-        pegButtons[row][col].setGraphic(circle);
+        if (canvasView != null) {
+            canvasView.setSelected(row, col);
+        } else {
+            pegCircles[row][col].setFill(Color.YELLOW);
+        }
     }
 
     private void deselectPeg() {
@@ -208,8 +294,11 @@ public class PegGameGUI extends Application {
             int row = selectedPegLocation.getRow();
             int col = selectedPegLocation.getCol();
             boolean isPeg = gameBoard.getGameBoard()[row][col];
-            Circle circle = new Circle(25, isPeg ? Color.BLACK : Color.WHITE);
-            pegButtons[row][col].setGraphic(circle);
+            if (canvasView != null) {
+                canvasView.setSelected(-1, -1);
+            } else {
+                pegCircles[row][col].setFill(isPeg ? Color.BLACK : Color.WHITE);
+            }
             selectedPegLocation = null;
         }
     }
@@ -222,24 +311,97 @@ public class PegGameGUI extends Application {
         GameState gameState = gameBoard.getGameState();
         if (gameState == GameState.NOT_STARTED) {
             gameStateLabel.setText("Game Not Started");
+            requestHint();
         } else if (gameState == GameState.IN_PROGRESS) {
             gameStateLabel.setText("Game In Progress");
+            requestHint();
         } else if (gameState == GameState.STALEMATE || gameState == GameState.WON) {
             gameStateLabel.setText(gameState == GameState.WON ? "You Won!" : "Stalemate");
+            hintEngine.cancel();
+            latestHint = null;
+            hintLabel.setText("");
             GameOver = true;
             disableBoard();
             showFinalGameState(gameState);
         }
     }
 
+    private void requestHint() {
+        /**
+ * Starts a background search for the best move on the current board. The previous
+ * hint is cleared so a hint for an older position is never shown.
+ */
+
+        latestHint = null;
+        hintLabel.setText(showHints ? "Hint: thinking..." : "");
+        hintEngine.analyze(gameBoard.getGameBoard());
+    }
+
+    private void receiveHint(HintEngine.Hint hint) {
+        /**
+ * Keeps the latest hint from the hint engine and shows it if hints are turned on.
+ * Called on the JavaFX thread.
+ * @param hint The best move found so far for the current board.
+ */
+
+        latestHint = hint;
+        if (showHints) {
+            showHint();
+        }
+    }
+
+    private void toggleHints() {
+        /**
+ * Shows or hides the suggested move.
+ */
+
+        showHints = !showHints;
+        if (!showHints) {
+            hintLabel.setText("");
+        } else if (latestHint != null) {
+            showHint();
+        } else if (gameBoard != null && !GameOver) {
+            hintLabel.setText("Hint: thinking...");
+        }
+    }
+
+    private void showHint() {
+        /**
+ * Displays the latest hint in the hint label.
+ */
+
+        Move move = latestHint.getMove();
+        if (move == null) {
+            hintLabel.setText("Hint: no moves left");
+            return;
+        }
+        hintLabel.setText("Hint: move (" + move.getFrom().getRow() + ", " + move.getFrom().getCol() + ") to ("
+                + move.getTo().getRow() + ", " + move.getTo().getCol() + "), "
+                + latestHint.getPegsLeft() + (latestHint.getPegsLeft() == 1 ? " peg" : " pegs") + " left"
+                + (latestHint.isProven() ? "" : " or fewer"));
+    }
+
     private void disableBoard() {
        /**
  * Disables all interactive elements on the game board, typically called when the game ends.
  */
 
-        for (Button[] row : pegButtons) {
-            for (Button button : row) {
-                button.setDisable(true);
+        setBoardDisabled(true);
+    }
+
+    private void setBoardDisabled(boolean disabled) {
+        /**
+ * Enables or disables clicks on the board, whichever way it is drawn.
+ * @param disabled True to ignore clicks on the board.
+ */
+
+        if (canvasView != null) {
+            canvasView.setDisable(disabled);
+        } else if (pegButtons != null) {
+            for (Button[] row : pegButtons) {
+                for (Button button : row) {
+                    button.setDisable(disabled);
+                }
             }
         }
     }
@@ -316,10 +478,45 @@ private void showFinalGameState(GameState state) {
 }
 
 
+    @Override
+    public void stop() {
+        /**
+ * Stops the hint engine's background search when the application exits.
+ */
+
+        hintEngine.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
 
+    private static boolean[][] chooseAndLoadBoard(Window ownerWindow) throws IOException {
+        /**
+ * Presents a file chooser and loads the board from the selected file, in any format FileUtil reads.
+ * @param ownerWindow The window that owns the file chooser dialog.
+ * @return The board, or null if no file was selected.
+ */
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Choose Board Configuration File");
+        File file = fileChooser.showOpenDialog(ownerWindow);
+        return file == null ? null : FileUtil.loadGameBoard(file.toPath());
+    }
+
+    private static void chooseAndSaveBoard(Window ownerWindow, boolean[][] board) throws IOException {
+        /**
+ * Presents a file chooser and saves the board as text to the selected file, if any.
+ * @param ownerWindow The window that owns the file chooser dialog.
+ * @param board The board to save.
+ */
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save your current Gameboard");
+        File file = fileChooser.showSaveDialog(ownerWindow);
+        if (file != null) {
+            FileUtil.saveGameBoard(file.toPath(), board);
+        }
+    }
+
     private static Label setLabel(Label l, int size, Color clr){
         /**
  * Styles and configures a label with specified font size and color.
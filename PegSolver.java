@@ -0,0 +1,354 @@
+package PegGamee;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exhaustive solver for Peg Game positions. It searches for a sequence of moves that
+ * leaves a single peg, or proves that none exists.
+ *
+ * The search tree is split across a ForkJoinPool: a task explores its subtree depth
+ * first and only hands sibling subtrees to the pool while the pool is running out of
+ * queued work, so idle workers can steal them. The rest of the search runs in place on
+ * a BitBoard with make/undo and does not allocate per node.
+ *
+ * Positions found to be lost are recorded in a TranspositionTable under their canonical
+ * key, so a position is not searched again when it is reached through another move order
+ * or as a rotation or reflection of one already searched. The table is kept across calls
+ * to solve, since a lost position stays lost whatever the starting layout.
+ */
+public class PegSolver {
+
+    // Below this many pegs a subtree is too small to be worth a task of its own
+    private static final int MIN_SPLIT_PEGS = 6;
+    // Split while the current worker has fewer than this many queued tasks
+    private static final int MAX_SURPLUS_TASKS = 2;
+    // Positions with this few pegs are cheaper to search again than to look up
+    private static final int MIN_TABLE_PEGS = 4;
+    private static final int DEFAULT_TABLE_BITS = 22;
+    // Nodes a task visits between looks at the clock
+    private static final int DEADLINE_CHECK_NODES = 1 << 12;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final EndgameDatabase endgame;
+    private final PositionAnalyzer analyzer;
+
+    /**
+     * Constructs a solver that runs on the common ForkJoinPool.
+     */
+    public PegSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a solver that runs on the given pool.
+     *
+     * @param pool The pool the search is split across.
+     */
+    public PegSolver(ForkJoinPool pool) {
+        this(pool, new TranspositionTable(DEFAULT_TABLE_BITS));
+    }
+
+    /**
+     * Constructs a solver that runs on the given pool and records lost positions in the given table.
+     *
+     * @param pool  The pool the search is split across.
+     * @param table The table of lost positions.
+     */
+    public PegSolver(ForkJoinPool pool, TranspositionTable table) {
+        this(pool, table, null);
+    }
+
+    /**
+     * Constructs a solver that also looks up positions with few pegs in an endgame database.
+     * The database is only used for boards of the size it was built for.
+     *
+     * @param pool    The pool the search is split across.
+     * @param table   The table of lost positions.
+     * @param endgame The endgame database, or null.
+     */
+    public PegSolver(ForkJoinPool pool, TranspositionTable table, EndgameDatabase endgame) {
+        this(pool, table, endgame, null);
+    }
+
+    /**
+     * Constructs a solver that also skips positions a PositionAnalyzer proves lost.
+     * The analyzer is only used for boards of the size it was made for.
+     *
+     * @param pool     The pool the search is split across.
+     * @param table    The table of lost positions.
+     * @param endgame  The endgame database, or null.
+     * @param analyzer The position analyzer, or null.
+     */
+    public PegSolver(ForkJoinPool pool, TranspositionTable table, EndgameDatabase endgame, PositionAnalyzer analyzer) {
+        this.pool = pool;
+        this.table = table;
+        this.endgame = endgame;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Searches for a winning sequence of moves from the given board. The board itself is not changed.
+     *
+     * @param board The position to solve.
+     * @return The outcome of the search.
+     */
+    public Result solve(SqrBoard board) {
+        return solve(new BitBoard(board.getGameBoard()));
+    }
+
+    /**
+     * Searches for a winning sequence of moves from the given board. The board itself is not changed.
+     *
+     * @param board The position to solve.
+     * @return The outcome of the search.
+     */
+    public Result solve(BitBoard board) {
+        return solve(board, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Searches for a winning sequence of moves from the given board, giving up after a time limit.
+     * The board itself is not changed.
+     *
+     * @param board     The position to solve.
+     * @param timeLimit How long the search may run.
+     * @param unit      The unit of the time limit.
+     * @return The outcome of the search, which may be that it ran out of time.
+     */
+    public Result solve(BitBoard board, long timeLimit, TimeUnit unit) {
+        boolean useEndgame = endgame != null && endgame.fitsSquareBoard(board.getRows(), board.getCols());
+        boolean useAnalyzer = analyzer != null && analyzer.getRows() == board.getRows() && analyzer.getCols() == board.getCols();
+        Search search = new Search(board.pegCount(), table, useEndgame ? endgame : null, useAnalyzer ? analyzer : null,
+                unit.toNanos(timeLimit));
+        long hitsBefore = table.getHits();
+        pool.invoke(new SearchTask(search, new BitBoard(board), new int[0]));
+        long tableHits = table.getHits() - hitsBefore + search.endgameHits.sum();
+
+        int[] solution = search.solution.get();
+        if (solution == null) {
+            return new Result(null, search.nodes.sum(), tableHits, search.pruned.sum(), search.timedOut);
+        }
+        List<Move> moves = new ArrayList<>(solution.length);
+        BitBoard replay = new BitBoard(board);
+        for (int move : solution) {
+            moves.add(replay.toMove(move));
+            replay.makeMove(move);
+        }
+        return new Result(moves, search.nodes.sum(), tableHits, search.pruned.sum(), false);
+    }
+
+    /**
+     * The outcome of a search.
+     */
+    public static class Result {
+        private final List<Move> moves;
+        private final long nodesSearched;
+        private final long tableHits;
+        private final long prunedNodes;
+        private final boolean timedOut;
+
+        Result(List<Move> moves, long nodesSearched, long tableHits, long prunedNodes, boolean timedOut) {
+            this.moves = moves == null ? null : Collections.unmodifiableList(moves);
+            this.nodesSearched = nodesSearched;
+            this.tableHits = tableHits;
+            this.prunedNodes = prunedNodes;
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * @return True if a winning sequence was found, false if none exists or the search ran out of time.
+         */
+        public boolean isSolvable() {
+            return moves != null;
+        }
+
+        /**
+         * @return The winning sequence of moves, or null if the position cannot be won.
+         */
+        public List<Move> getMoves() {
+            return moves;
+        }
+
+        /**
+         * @return The number of positions visited by the search.
+         */
+        public long getNodesSearched() {
+            return nodesSearched;
+        }
+
+        /**
+         * @return The number of positions skipped because they were already known to be lost,
+         *         from the table or the endgame database. Other searches sharing the table may add to this count.
+         */
+        public long getTableHits() {
+            return tableHits;
+        }
+
+        /**
+         * @return The number of positions skipped because the PositionAnalyzer proved them lost.
+         */
+        public long getPrunedNodes() {
+            return prunedNodes;
+        }
+
+        /**
+         * @return True if the search stopped at its time limit without finding a winning sequence,
+         *         so it is not known whether one exists.
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+
+    /**
+     * State shared by all tasks of one search.
+     */
+    private static class Search {
+        final int startPegs;
+        final TranspositionTable table;
+        final EndgameDatabase endgame; // Null if none fits the board
+        final PositionAnalyzer analyzer; // Null if none fits the board
+        final AtomicReference<int[]> solution = new AtomicReference<>();
+        final LongAdder nodes = new LongAdder();
+        final LongAdder endgameHits = new LongAdder();
+        final LongAdder pruned = new LongAdder();
+        final long deadline; // System.nanoTime() at which the search gives up
+        volatile boolean timedOut;
+
+        Search(int startPegs, TranspositionTable table, EndgameDatabase endgame, PositionAnalyzer analyzer, long timeLimitNanos) {
+            this.startPegs = startPegs;
+            this.table = table;
+            this.endgame = endgame;
+            this.analyzer = analyzer;
+            long now = System.nanoTime();
+            this.deadline = timeLimitNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeLimitNanos;
+        }
+
+        /**
+         * @return True once the search can stop, because a solution was found or time ran out.
+         */
+        boolean isSolved() {
+            return timedOut || solution.get() != null;
+        }
+    }
+
+    /**
+     * Explores the subtree below a position reached by a known sequence of moves.
+     */
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final BitBoard board;
+        private final int[] path;       // Moves from the root, the first depth entries are in use
+        private final int startDepth;
+        private final int[][] moveBuffers;
+        private long nodes;
+
+        SearchTask(Search search, BitBoard board, int[] prefix) {
+            this.search = search;
+            this.board = board;
+            this.startDepth = prefix.length;
+            this.path = new int[Math.max(search.startPegs, startDepth + 1)];
+            System.arraycopy(prefix, 0, path, 0, startDepth);
+            this.moveBuffers = new int[path.length][];
+        }
+
+        @Override
+        protected void compute() {
+            search(startDepth);
+            search.nodes.add(nodes);
+        }
+
+        /**
+         * @return True once the search can stop, either because this subtree
+         *         holds a solution, because another task found one or because time ran out.
+         */
+        private boolean search(int depth) {
+            nodes++;
+            if ((nodes & (DEADLINE_CHECK_NODES - 1)) == 0 && System.nanoTime() - search.deadline > 0) {
+                search.timedOut = true;
+            }
+            if (search.isSolved()) {
+                return true;
+            }
+            int pegs = search.startPegs - depth;
+            if (pegs == 1) {
+                int[] solution = new int[depth];
+                System.arraycopy(path, 0, solution, 0, depth);
+                search.solution.compareAndSet(null, solution);
+                return true;
+            }
+            if (search.endgame != null && pegs >= 1 && pegs <= search.endgame.getMaxPegs()) {
+                if (!search.endgame.isWinnable(board)) {
+                    search.endgameHits.increment();
+                    return false;
+                }
+                // Winnable: every losing child is cut off by the database, so the search walks straight to a win
+            }
+            long key = 0;
+            if (pegs >= MIN_TABLE_PEGS) {
+                key = board.canonicalKey();
+                if (search.table.contains(key)) {
+                    return false;
+                }
+            }
+            if (search.analyzer != null && search.analyzer.analyze(board) != null) {
+                search.pruned.increment();
+                if (pegs >= MIN_TABLE_PEGS) {
+                    search.table.store(key, pegs); // So transpositions skip the analysis too
+                }
+                return false;
+            }
+
+            int[] moves = moveBuffers[depth];
+            if (moves == null) {
+                moves = moveBuffers[depth] = new int[4 * board.getRows() * board.getCols()];
+            }
+            int count = board.getPossibleMoves(moves);
+            SearchTask[] forked = null;
+            if (count > 1 && pegs > MIN_SPLIT_PEGS && getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                // Hand every sibling but the first to the pool and keep the first for ourselves
+                forked = new SearchTask[count - 1];
+                for (int i = 1; i < count; i++) {
+                    BitBoard child = new BitBoard(board);
+                    child.makeMove(moves[i]);
+                    int[] prefix = new int[depth + 1];
+                    System.arraycopy(path, 0, prefix, 0, depth);
+                    prefix[depth] = moves[i];
+                    forked[i - 1] = new SearchTask(search, child, prefix);
+                    forked[i - 1].fork();
+                }
+                count = 1;
+            }
+
+            boolean done = false;
+            for (int i = 0; i < count && !done; i++) {
+                board.makeMove(moves[i]);
+                path[depth] = moves[i];
+                done = search(depth + 1);
+                board.undoMove(moves[i]);
+            }
+            if (forked != null) {
+                for (int i = forked.length - 1; i >= 0; i--) {
+                    forked[i].join();
+                }
+            }
+            if (done || search.isSolved()) {
+                return true;
+            }
+            if (pegs >= MIN_TABLE_PEGS) {
+                search.table.store(key, pegs); // Every move from here was searched without success
+            }
+            return false;
+        }
+    }
+}
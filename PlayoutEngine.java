@@ -0,0 +1,348 @@
+package PegGamee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates how good a position is by playing many games to the end with random moves.
+ *
+ * The playouts are split evenly across the workers of a ForkJoinPool. Each worker has its
+ * own SplittableRandom, split from one root so a seeded run is repeatable, and its own
+ * scratch board. The scratch board keeps its legal moves in a dense array with an index
+ * per move, so a random move is picked in constant time and a move updates only the 36
+ * moves that can start, pass over or land on its three cells. After a playout the board
+ * is copied back to the starting position, ready for the next one. Nothing is allocated
+ * per move or per playout.
+ */
+public class PlayoutEngine {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs an engine that runs on the common ForkJoinPool.
+     */
+    public PlayoutEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an engine that runs on the given pool.
+     *
+     * @param pool The pool the playouts are split across.
+     */
+    public PlayoutEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Plays random games from a position. The board itself is not changed.
+     *
+     * @param board     The position to play from.
+     * @param playouts  The number of games to play.
+     * @return The outcome of the playouts.
+     */
+    public Result run(SqrBoard board, long playouts) {
+        return run(board.getGameBoard(), playouts, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Plays random games from a position. The same position, count, seed and pool size always give the same result.
+     *
+     * @param board    The position to play from, where true indicates a peg.
+     * @param playouts The number of games to play.
+     * @param seed     The seed of the random moves.
+     * @return The outcome of the playouts.
+     */
+    public Result run(boolean[][] board, long playouts, long seed) {
+        long start = System.nanoTime();
+        int workers = (int) Math.max(1, Math.min(pool.getParallelism(), playouts));
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Callable<Worker>> tasks = new ArrayList<>(workers);
+        Playout scratch = null;
+        for (int i = 0; i < workers; i++) {
+            long share = playouts / workers + (i < playouts % workers ? 1 : 0);
+            Worker worker = new Worker(scratch = new Playout(board), root.split(), share);
+            tasks.add(() -> {
+                worker.run();
+                return worker;
+            });
+        }
+
+        long[] histogram = null;
+        int[] bestLine = new int[0];
+        int bestPegs = Integer.MAX_VALUE;
+        try {
+            for (Future<Worker> done : pool.invokeAll(tasks)) {
+                Worker worker = done.get();
+                if (histogram == null) {
+                    histogram = worker.histogram.clone();
+                } else {
+                    for (int pegs = 0; pegs < histogram.length; pegs++)
+                        histogram[pegs] += worker.histogram[pegs];
+                }
+                if (worker.bestPegs < bestPegs) {
+                    bestPegs = worker.bestPegs;
+                    bestLine = Arrays.copyOf(worker.bestLine, worker.bestLength);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing out", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Playout failed", e.getCause());
+        }
+
+        int cols = board.length == 0 ? 0 : board[0].length;
+        List<Move> line = new ArrayList<>(bestLine.length);
+        for (int move : bestLine) {
+            line.add(PackedMove.toMove(scratch.toPackedMove(move, cols), cols));
+        }
+        return new Result(playouts, histogram, line, bestPegs, System.nanoTime() - start);
+    }
+
+    /**
+     * The outcome of a run of playouts.
+     */
+    public static class Result {
+        private final long playouts;
+        private final long[] histogram;
+        private final List<Move> bestLine;
+        private final int bestPegsLeft;
+        private final long elapsedNanos;
+
+        Result(long playouts, long[] histogram, List<Move> bestLine, int bestPegsLeft, long elapsedNanos) {
+            this.playouts = playouts;
+            this.histogram = histogram;
+            this.bestLine = Collections.unmodifiableList(bestLine);
+            this.bestPegsLeft = bestPegsLeft;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getPlayouts() {
+            return playouts;
+        }
+
+        /**
+         * @return How many playouts ended with each number of pegs, indexed by peg count.
+         */
+        public long[] getPegCountHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * @return The average number of pegs left at the end of a playout.
+         */
+        public double getMeanPegsLeft() {
+            double sum = 0;
+            for (int pegs = 0; pegs < histogram.length; pegs++)
+                sum += (double) pegs * histogram[pegs];
+            return playouts == 0 ? 0 : sum / playouts;
+        }
+
+        /**
+         * @return The fraction of playouts that left a single peg.
+         */
+        public double getWinRate() {
+            return playouts == 0 || histogram.length < 2 ? 0 : (double) histogram[1] / playouts;
+        }
+
+        /**
+         * @return The moves of the playout that left the fewest pegs.
+         */
+        public List<Move> getBestLine() {
+            return bestLine;
+        }
+
+        /**
+         * @return The number of pegs left by the best line.
+         */
+        public int getBestPegsLeft() {
+            return bestPegsLeft;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(playouts).append(" playouts in ").append(elapsedNanos / 1_000_000).append(" ms, mean ")
+                .append(String.format("%.2f", getMeanPegsLeft())).append(" pegs left, best ").append(bestPegsLeft)
+                .append('\n');
+            for (int pegs = 0; pegs < histogram.length; pegs++) {
+                if (histogram[pegs] != 0)
+                    text.append(String.format("%6d pegs: %d%n", pegs, histogram[pegs]));
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Plays a share of the playouts on one scratch board.
+     */
+    private static final class Worker {
+        final Playout board;
+        final SplittableRandom random;
+        final long playouts;
+        final long[] histogram;
+        final int[] line;
+        final int[] bestLine;
+        int bestLength;
+        int bestPegs = Integer.MAX_VALUE;
+
+        Worker(Playout board, SplittableRandom random, long playouts) {
+            this.board = board;
+            this.random = random;
+            this.playouts = playouts;
+            this.histogram = new long[board.pegCount + 1];
+            this.line = new int[Math.max(0, board.pegCount - 1)];
+            this.bestLine = new int[line.length];
+        }
+
+        void run() {
+            Playout board = this.board;
+            for (long i = 0; i < playouts; i++) {
+                int length = 0;
+                while (board.legalCount > 0) {
+                    int move = board.legal[random.nextInt(board.legalCount)];
+                    board.jump(move);
+                    line[length++] = move;
+                }
+                int pegs = board.pegCount;
+                histogram[pegs]++;
+                if (pegs < bestPegs) {
+                    bestPegs = pegs;
+                    bestLength = length;
+                    System.arraycopy(line, 0, bestLine, 0, length);
+                }
+                board.reset();
+            }
+        }
+    }
+
+    /**
+     * A scratch board whose legal moves are kept in a dense array.
+     *
+     * The board is surrounded by a wall two cells thick, so every cell a move can start
+     * from, pass over or land on has an index and no move needs a bounds check. A move is
+     * its padded starting cell times four plus its direction, as in PackedMove but on the
+     * padded grid. Resetting copies the starting arrays back, which is cheaper than taking
+     * every move back one at a time.
+     */
+    private static final class Playout {
+        private static final byte EMPTY = 0;
+        private static final byte PEG = 1;
+        private static final byte WALL = 2;
+        private static final int BORDER = 2;
+
+        final int width; // Columns plus the wall on both sides
+        final int[] steps; // Index offset of the jumped-over cell, per direction
+        final byte[] cells;
+        final int[] legal; // The first legalCount entries are the legal moves, in no particular order
+        final int[] slot; // Index of each move in legal, or -1 if it is not legal
+        int legalCount;
+        int pegCount;
+
+        private final byte[] startCells;
+        private final int[] startLegal;
+        private final int[] startSlot;
+        private final int startLegalCount;
+        private final int startPegCount;
+
+        Playout(boolean[][] board) {
+            int rows = board.length, cols = rows == 0 ? 0 : board[0].length;
+            this.width = cols + 2 * BORDER;
+            this.steps = new int[] { 1, -1, width, -width };
+            this.cells = new byte[(rows + 2 * BORDER) * width];
+            Arrays.fill(cells, WALL);
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    boolean peg = board[row][col];
+                    cells[(row + BORDER) * width + col + BORDER] = peg ? PEG : EMPTY;
+                    if (peg)
+                        pegCount++;
+                }
+            }
+            this.slot = new int[cells.length * 4];
+            Arrays.fill(slot, -1);
+            this.legal = new int[Math.max(1, 4 * pegCount)];
+            for (int cell = 0; cell < cells.length; cell++) {
+                for (int dir = 0; dir < 4; dir++)
+                    refresh(cell, dir);
+            }
+            this.startCells = cells.clone();
+            this.startLegal = legal.clone();
+            this.startSlot = slot.clone();
+            this.startLegalCount = legalCount;
+            this.startPegCount = pegCount;
+        }
+
+        /**
+         * Makes a move that is known to be legal.
+         */
+        void jump(int move) {
+            int from = move >>> 2, step = steps[move & 3];
+            int over = from + step, to = over + step;
+            cells[from] = EMPTY;
+            cells[over] = EMPTY;
+            cells[to] = PEG;
+            pegCount--;
+            refreshAround(from);
+            refreshAround(over);
+            refreshAround(to);
+        }
+
+        void reset() {
+            System.arraycopy(startCells, 0, cells, 0, cells.length);
+            System.arraycopy(startSlot, 0, slot, 0, slot.length);
+            System.arraycopy(startLegal, 0, legal, 0, startLegalCount);
+            legalCount = startLegalCount;
+            pegCount = startPegCount;
+        }
+
+        /**
+         * Converts a move on the padded grid to a PackedMove on the board.
+         */
+        int toPackedMove(int move, int cols) {
+            int from = move >>> 2;
+            int row = from / width - BORDER, col = from % width - BORDER;
+            return PackedMove.encode(row * cols + col, move & 3);
+        }
+
+        private void refreshAround(int cell) {
+            for (int dir = 0; dir < 4; dir++) {
+                int step = steps[dir];
+                refresh(cell, dir);
+                refresh(cell - step, dir);
+                refresh(cell - 2 * step, dir);
+            }
+        }
+
+        private void refresh(int from, int dir) {
+            if (cells[from] == WALL)
+                return; // Only walls are near the edge of the padded grid, so the landing cell is never needed there
+            int step = steps[dir];
+            boolean now = cells[from] == PEG && cells[from + step] == PEG && cells[from + 2 * step] == EMPTY;
+            int move = from << 2 | dir;
+            int index = slot[move];
+            if (now && index < 0) {
+                slot[move] = legalCount;
+                legal[legalCount++] = move;
+            } else if (!now && index >= 0) {
+                // Move the last legal move into the freed slot
+                int last = legal[--legalCount];
+                legal[index] = last;
+                slot[last] = index;
+                slot[move] = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package PegGamee;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Proves, without searching, that some positions on a square board can no longer be
+ * reduced to a single peg. A position it cannot prove lost may still be lost.
+ *
+ * Three tests run in order of cost, on the holes the last peg could end in:
+ * <ul>
+ * <li>Position classes. Every jump changes the number of pegs on each of the three diagonal
+ * classes, (row + col) mod 3, by one, and likewise for (row - col) mod 3. The parity of the
+ * three counts after the remaining pegCount - 1 jumps is therefore known, and only holes of
+ * the one class in each direction that matches it can hold the last peg.</li>
+ * <li>Pagoda functions. Weights on the holes such that no jump increases the total weight of
+ * the pegs. If the total is already below the weight of every hole still open to the last
+ * peg, it cannot end there. Weights are stored as bit planes, so a total is a few bit counts.</li>
+ * <li>Dead pegs. An over-approximation, grown to a fixpoint, of the holes that can ever become
+ * empty and ever hold a peg. A peg that can never be removed is stuck for good: two of them
+ * and the game is lost, one and it must be the last peg. The last peg must also end in a
+ * hole that can ever hold one.</li>
+ * </ul>
+ * An analyzer can be shared between threads.
+ */
+public final class PositionAnalyzer {
+
+    /**
+     * Why a position was proven lost.
+     */
+    public enum Reason {
+        /** The position class parities rule out every hole of the board. */
+        POSITION_CLASS,
+        /** Pegs that can never be removed, or no hole left that the last peg can reach. */
+        DEAD_PEGS,
+        /** A pagoda function is already below every hole the last peg could end in. */
+        PAGODA
+    }
+
+    // Weights of the edge pagodas stop growing here, which keeps them pagodas and keeps the totals small
+    private static final int MAX_WEIGHT = 1 << 16;
+
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final int[] steps; // Bit offset from a peg to the peg it jumps over, per direction
+    private final long[] onBoard;
+    private final long[][] launch; // Per direction, cells whose landing cell is on the board
+    private final long[][] diagonal; // Cells with (row + col) mod 3 equal to the index
+    private final long[][] antiDiagonal; // Cells with (row - col) mod 3 equal to the index
+    private final int[][] weights; // Per pagoda, the weight of each cell
+    private final long[][][] planes; // Per pagoda, bit i of the weight of each cell
+    private final LongAdder[] lost = new LongAdder[Reason.values().length];
+    private final ThreadLocal<long[][]> scratch;
+
+    /**
+     * Constructs an analyzer for boards of the given size.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     */
+    public PositionAnalyzer(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.words = Math.max(1, (rows * cols + 63) >>> 6);
+        this.steps = new int[] { 1, -1, cols, -cols };
+        this.onBoard = new long[words];
+        this.launch = new long[4][words];
+        this.diagonal = new long[3][words];
+        this.antiDiagonal = new long[3][words];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int bit = row * cols + col;
+                setBit(onBoard, bit);
+                setBit(diagonal[(row + col) % 3], bit);
+                setBit(antiDiagonal[Math.floorMod(row - col, 3)], bit);
+                for (int dir = 0; dir < 4; dir++) {
+                    int toRow = row + 2 * PackedMove.ROW_STEP[dir], toCol = col + 2 * PackedMove.COL_STEP[dir];
+                    if (toRow >= 0 && toRow < rows && toCol >= 0 && toCol < cols)
+                        setBit(launch[dir], bit);
+                }
+            }
+        }
+
+        List<int[]> pagodas = new ArrayList<>();
+        for (int k = 0; k < 3; k++) {
+            final int stripe = k;
+            pagodas.add(pagoda((row, col) -> col % 3 == stripe ? 0 : 1));
+            pagodas.add(pagoda((row, col) -> row % 3 == stripe ? 0 : 1));
+        }
+        int[] edge = edgeWeights(Math.max(rows, cols));
+        pagodas.add(pagoda((row, col) -> edge[col]));
+        pagodas.add(pagoda((row, col) -> edge[cols - 1 - col]));
+        pagodas.add(pagoda((row, col) -> edge[row]));
+        pagodas.add(pagoda((row, col) -> edge[rows - 1 - row]));
+        this.weights = pagodas.toArray(new int[0][]);
+        this.planes = new long[weights.length][][];
+        for (int p = 0; p < weights.length; p++) {
+            checkPagoda(weights[p]);
+            planes[p] = toPlanes(weights[p]);
+        }
+
+        for (int i = 0; i < lost.length; i++) {
+            lost[i] = new LongAdder();
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new long[5][words]);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Checks if a position is proven lost.
+     *
+     * @param board The position, where true indicates a peg, of the analyzer's size.
+     * @return Why the position is lost, or null if that could not be proven.
+     */
+    public Reason analyze(boolean[][] board) {
+        long[] pegs = new long[words];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (board[row][col])
+                    setBit(pegs, row * cols + col);
+            }
+        }
+        return analyze(pegs);
+    }
+
+    /**
+     * Checks if a position is proven lost. Nothing is allocated, so this can run on every
+     * node of a search.
+     *
+     * @param board The position, of the analyzer's size.
+     * @return Why the position is lost, or null if that could not be proven.
+     */
+    public Reason analyze(BitBoard board) {
+        return analyze(board.pegWords());
+    }
+
+    /**
+     * Gets the number of positions proven lost so far, by any caller.
+     *
+     * @param reason The test that proved them lost.
+     * @return The number of positions.
+     */
+    public long getLostCount(Reason reason) {
+        return lost[reason.ordinal()].sum();
+    }
+
+    private Reason analyze(long[] pegs) {
+        int pegCount = 0;
+        for (long word : pegs)
+            pegCount += Long.bitCount(word);
+        if (pegCount <= 1) {
+            return null;
+        }
+        long[][] space = scratch.get();
+        long[] targets = space[0];
+
+        // Each of the pegCount - 1 jumps left flips the parity of all three class counts
+        int flip = (pegCount - 1) & 1;
+        int diagonalClass = finalClass(pegs, diagonal, flip);
+        int antiDiagonalClass = finalClass(pegs, antiDiagonal, flip);
+        boolean any = false;
+        if (diagonalClass >= 0 && antiDiagonalClass >= 0) {
+            for (int w = 0; w < words; w++) {
+                targets[w] = diagonal[diagonalClass][w] & antiDiagonal[antiDiagonalClass][w];
+                any |= targets[w] != 0;
+            }
+        }
+        if (!any) {
+            return lost(Reason.POSITION_CLASS);
+        }
+
+        for (int p = 0; p < weights.length; p++) {
+            long total = 0;
+            long[][] bits = planes[p];
+            for (int plane = 0; plane < bits.length; plane++) {
+                long count = 0;
+                for (int w = 0; w < words; w++)
+                    count += Long.bitCount(pegs[w] & bits[plane][w]);
+                total += count << plane;
+            }
+            if (total < minWeight(weights[p], targets)) {
+                return lost(Reason.PAGODA);
+            }
+        }
+
+        if (!narrowByDeadPegs(pegs, targets, space)) {
+            return lost(Reason.DEAD_PEGS);
+        }
+        return null;
+    }
+
+    private Reason lost(Reason reason) {
+        lost[reason.ordinal()].increment();
+        return reason;
+    }
+
+    /**
+     * Works out the class of the hole the last peg must end in, from the parity of the
+     * number of pegs in each class now.
+     *
+     * @return The class, or -1 if no class has the parity a single peg would give.
+     */
+    private int finalClass(long[] pegs, long[][] classes, int flip) {
+        int parity = 0;
+        for (int k = 0; k < 3; k++) {
+            int count = 0;
+            for (int w = 0; w < words; w++)
+                count += Long.bitCount(pegs[w] & classes[k][w]);
+            parity |= ((count ^ flip) & 1) << k;
+        }
+        // A single peg leaves exactly one class with an odd count
+        return Integer.bitCount(parity) == 1 ? Integer.numberOfTrailingZeros(parity) : -1;
+    }
+
+    /**
+     * Grows the holes that can ever hold a peg and the holes that can ever be empty until no
+     * jump adds to them, then keeps only the targets the last peg can end in.
+     *
+     * @return False if no target is left or more than one peg can never be removed.
+     */
+    private boolean narrowByDeadPegs(long[] pegs, long[] targets, long[][] space) {
+        long[] mayPeg = space[1], mayEmpty = space[2], jumps = space[3], moved = space[4];
+        for (int w = 0; w < words; w++) {
+            mayPeg[w] = pegs[w];
+            mayEmpty[w] = ~pegs[w] & onBoard[w];
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int dir = 0; dir < 4; dir++) {
+                int step = steps[dir];
+                // Jumps that may be possible some time, marked on their starting cell
+                BitBoard.gather(mayPeg, step, jumps);
+                BitBoard.gather(mayEmpty, 2 * step, moved);
+                long any = 0;
+                for (int w = 0; w < words; w++) {
+                    jumps[w] &= mayPeg[w] & moved[w] & launch[dir][w];
+                    any |= jumps[w];
+                }
+                if (any == 0)
+                    continue;
+                // The starting and jumped-over cells may become empty, the landing cell may get a peg
+                BitBoard.gather(jumps, -step, moved);
+                for (int w = 0; w < words; w++) {
+                    long empty = mayEmpty[w] | jumps[w] | moved[w];
+                    changed |= empty != mayEmpty[w];
+                    mayEmpty[w] = empty;
+                }
+                BitBoard.gather(jumps, -2 * step, moved);
+                for (int w = 0; w < words; w++) {
+                    long peg = mayPeg[w] | moved[w];
+                    changed |= peg != mayPeg[w];
+                    mayPeg[w] = peg;
+                }
+            }
+        }
+
+        int stuck = 0;
+        int stuckBit = -1;
+        for (int w = 0; w < words; w++) {
+            long word = pegs[w] & ~mayEmpty[w];
+            if (word != 0) {
+                stuck += Long.bitCount(word);
+                stuckBit = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        if (stuck > 1) {
+            return false;
+        }
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            targets[w] &= mayPeg[w];
+            if (stuck == 1)
+                targets[w] &= w == stuckBit >>> 6 ? 1L << stuckBit : 0;
+            any |= targets[w] != 0;
+        }
+        return any;
+    }
+
+    /**
+     * Gives the weight of a cell.
+     */
+    private interface CellWeight {
+        int weight(int row, int col);
+    }
+
+    private int[] pagoda(CellWeight weight) {
+        int[] cells = new int[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++)
+                cells[row * cols + col] = weight.weight(row, col);
+        }
+        return cells;
+    }
+
+    /**
+     * Weights by distance from an edge: 1, 0, 1, then each the sum of the two before, capped.
+     * A peg next to the edge can only reach it with the help of a peg further out, which
+     * weighs at least as much.
+     */
+    private static int[] edgeWeights(int length) {
+        int[] edge = new int[Math.max(3, length)];
+        edge[0] = 1;
+        edge[1] = 0;
+        edge[2] = 1;
+        for (int d = 3; d < edge.length; d++)
+            edge[d] = Math.min(MAX_WEIGHT, edge[d - 1] + edge[d - 2]);
+        return edge;
+    }
+
+    /**
+     * Checks that no jump increases the total weight: the weights of the starting and
+     * jumped-over cells add up to at least the weight of the landing cell.
+     */
+    private void checkPagoda(int[] weight) {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int from = row * cols + col;
+                for (int dir = 0; dir < 4; dir++) {
+                    if ((launch[dir][from >>> 6] & (1L << from)) == 0)
+                        continue;
+                    int over = from + steps[dir], to = over + steps[dir];
+                    if (weight[from] + weight[over] < weight[to]) {
+                        throw new IllegalStateException("Not a pagoda function at (" + row + ", " + col + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    private long[][] toPlanes(int[] weight) {
+        int max = 0;
+        for (int w : weight)
+            max = Math.max(max, w);
+        long[][] bits = new long[32 - Integer.numberOfLeadingZeros(max)][words];
+        for (int cell = 0; cell < weight.length; cell++) {
+            for (int plane = 0; plane < bits.length; plane++) {
+                if ((weight[cell] >>> plane & 1) != 0)
+                    setBit(bits[plane], cell);
+            }
+        }
+        return bits;
+    }
+
+    private int minWeight(int[] weight, long[] targets) {
+        int min = Integer.MAX_VALUE;
+        for (int w = 0; w < words; w++) {
+            for (long word = targets[w]; word != 0; word &= word - 1) {
+                min = Math.min(min, weight[(w << 6) + Long.numberOfTrailingZeros(word)]);
+            }
+        }
+        return min;
+    }
+
+    private static void setBit(long[] words, int bit) {
+        words[bit >>> 6] |= 1L << bit;
+    }
+}
@@ -0,0 +1,808 @@
+package PegGamee;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Counts every position reachable from a starting layout, level by level, with the
+ * branching factor and the number of stalemates on each level.
+ *
+ * A position is a long with bit (row * cols + col) set for each peg, so the board grid may
+ * have up to 64 cells; moves follow the geometry's jump table, which for a square
+ * geometry are SqrBoard's rules. Every jump removes one peg, so level n holds exactly the
+ * positions with n fewer pegs than the start and the search is breadth first by construction.
+ *
+ * Each level is split into partitions by a hash of the position, and each partition is a
+ * sorted run of distinct positions. To expand a level its runs are cut into segments and
+ * shared across the pool. Successors are buffered per partition, sorted, deduplicated and
+ * added to the next level as runs. Once too many runs pile up in a partition they are
+ * merged. When the runs in memory would go over the memory budget, new runs are written
+ * to the spill directory instead, as deltas between consecutive positions in variable-length
+ * bytes. Once a level is expanded, each partition merges its runs into one, in parallel
+ * with the other partitions, and that run is the partition of the next level.
+ *
+ * Usage: {@code java PegGamee.PositionEnumerator <board file|english|european> [spill directory] [memory MB] [levels]}
+ */
+public final class PositionEnumerator {
+
+    private static final int BUFFER_LONGS = 1 << 13; // Successors buffered per partition before they become a run
+    private static final int SEGMENT_LONGS = 1 << 18; // Positions of a level handed to one task
+    private static final int COMPACT_RUNS = 32; // Runs in memory that a partition merges into one
+    private static final int IO_BUFFER = 1 << 16;
+
+    private final BoardGeometry geometry;
+    private final long[] takeOff; // Per jump, the starting and jumped-over cells
+    private final long[] landing; // Per jump, the landing cell
+    private final ForkJoinPool pool;
+    private final Path spillDirectory;
+    private final long memoryBudget; // Longs that runs may hold on the heap before new ones are spilled
+    private final AtomicLong inMemory = new AtomicLong();
+    private final AtomicLong spillFiles = new AtomicLong();
+    private final int partitionBits;
+    private Path spillRoot; // Created on the first spill of an enumeration, deleted at its end
+
+    /**
+     * Constructs an enumerator.
+     *
+     * @param geometry       The board geometry, on a grid of at most 64 cells.
+     * @param pool           The pool each level is shared across.
+     * @param spillDirectory Where to write runs that do not fit in the memory budget.
+     * @param memoryBytes    The heap the runs of a level may take before they are spilled.
+     */
+    public PositionEnumerator(BoardGeometry geometry, ForkJoinPool pool, Path spillDirectory, long memoryBytes) {
+        if ((long) geometry.getRows() * geometry.getCols() > Long.SIZE) {
+            throw new IllegalArgumentException("The " + geometry + " board has more than 64 cells");
+        }
+        this.geometry = geometry;
+        this.takeOff = new long[geometry.getJumpCount()];
+        this.landing = new long[geometry.getJumpCount()];
+        for (int jump = 0; jump < takeOff.length; jump++) {
+            takeOff[jump] = 1L << geometry.getJumpFrom(jump) | 1L << geometry.getJumpOver(jump);
+            landing[jump] = 1L << geometry.getJumpTo(jump);
+        }
+        this.pool = pool;
+        this.spillDirectory = spillDirectory;
+        this.memoryBudget = memoryBytes / Long.BYTES;
+        this.partitionBits = 2 + 31 - Integer.numberOfLeadingZeros(Math.max(1, pool.getParallelism()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PositionEnumerator <board file|english|european> [spill directory] [memory MB] [levels]");
+            System.exit(2);
+        }
+        BoardGeometry geometry;
+        boolean[][] start;
+        switch (args[0]) {
+            case "english":
+                geometry = BoardGeometry.english();
+                start = geometry.fullBoard(3, 3);
+                break;
+            case "european":
+                geometry = BoardGeometry.european();
+                start = geometry.fullBoard(2, 3);
+                break;
+            default:
+                start = FileUtil.loadGameBoard(Paths.get(args[0]));
+                geometry = BoardGeometry.square(start.length, start[0].length);
+        }
+        Path spill = Paths.get(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        long memory = args.length > 2 ? Long.parseLong(args[2]) << 20 : Runtime.getRuntime().maxMemory() / 2;
+        int levels = args.length > 3 ? Integer.parseInt(args[3]) : Integer.MAX_VALUE;
+
+        long begin = System.nanoTime();
+        PositionEnumerator enumerator = new PositionEnumerator(geometry, ForkJoinPool.commonPool(), spill, memory);
+        List<LevelStats> stats = enumerator.enumerate(start, levels, level -> System.out.println(level));
+        long total = 0;
+        for (LevelStats level : stats)
+            total += level.getPositions();
+        System.out.println(total + " positions in " + (System.nanoTime() - begin) / 1_000_000 + " ms, "
+                + enumerator.spillFiles.get() + " runs spilled");
+    }
+
+    /**
+     * Enumerates every position reachable from a start.
+     *
+     * @param start The starting board, where true indicates a peg, of the geometry's size.
+     * @return The statistics of each level, starting with the start itself.
+     * @throws IOException If a spilled run cannot be written or read.
+     */
+    public List<LevelStats> enumerate(boolean[][] start) throws IOException {
+        return enumerate(start, Integer.MAX_VALUE, level -> { });
+    }
+
+    /**
+     * Enumerates the positions reachable from a start, up to a number of levels.
+     *
+     * @param start    The starting board, where true indicates a peg, of the geometry's size.
+     * @param levels   The largest number of levels to enumerate, counting the start.
+     * @param progress Told about each level as soon as it has been expanded.
+     * @return The statistics of each level, starting with the start itself.
+     * @throws IOException If a spilled run cannot be written or read.
+     */
+    public List<LevelStats> enumerate(boolean[][] start, int levels, Consumer<LevelStats> progress) throws IOException {
+        long position = 0;
+        int cols = geometry.getCols();
+        for (int row = 0; row < geometry.getRows(); row++) {
+            for (int col = 0; col < cols; col++) {
+                if (start[row][col] && geometry.isHole(row, col))
+                    position |= 1L << (row * cols + col);
+            }
+        }
+        Run[] level = new Run[1 << partitionBits];
+        Arrays.fill(level, Run.EMPTY);
+        level[partition(position)] = new Run(new long[] { position }, 1);
+        inMemory.addAndGet(1);
+
+        List<LevelStats> stats = new ArrayList<>();
+        Partition[] next = null; // The next level while it is being built, released here if that fails
+        try {
+            for (int pegs = Long.bitCount(position); pegs > 0 && stats.size() < levels; pegs--) {
+                next = new Partition[level.length];
+                for (int k = 0; k < next.length; k++) {
+                    next[k] = new Partition();
+                }
+                LevelStats expanded = expand(pegs, level, next, stats.size() + 1 < levels);
+                Run[] expandedLevel = level;
+                level = new Run[0]; // Released now, so it must not be released again if a later step fails
+                for (Run run : expandedLevel)
+                    release(run);
+                stats.add(expanded);
+                progress.accept(expanded);
+                level = merge(next);
+                next = null;
+            }
+        } finally {
+            for (Run run : level)
+                release(run);
+            if (next != null) {
+                for (Partition partition : next) {
+                    for (Run run : partition.takeRuns())
+                        release(run);
+                }
+            }
+            deleteSpillRoot();
+        }
+        return stats;
+    }
+
+    /**
+     * Expands every position of a level, filling the partitions of the next level with runs.
+     */
+    private LevelStats expand(int pegs, Run[] level, Partition[] next, boolean keep) throws IOException {
+        LevelStats stats = new LevelStats(pegs);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Run run : level) {
+            if (run.values == null && run.count > 0) {
+                tasks.add(() -> {
+                    try (LongSource source = run.open()) {
+                        new Expander(stats, next, keep).expand(source, run.count);
+                    }
+                    return null;
+                });
+                continue;
+            }
+            for (int from = 0; from < run.count; from += SEGMENT_LONGS) {
+                int start = from, end = (int) Math.min(run.count, from + (long) SEGMENT_LONGS);
+                tasks.add(() -> {
+                    new Expander(stats, next, keep).expand(new ArraySource(run.values, start, end), end - start);
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+        return stats;
+    }
+
+    /**
+     * Merges the runs of each partition into one, the partitions in parallel. If one merge
+     * fails, the runs the others produced are released; runs not yet taken stay in their partition.
+     */
+    private Run[] merge(Partition[] partitions) throws IOException {
+        Run[] merged = new Run[partitions.length];
+        List<Callable<Void>> tasks = new ArrayList<>(partitions.length);
+        for (int k = 0; k < partitions.length; k++) {
+            int index = k;
+            tasks.add(() -> {
+                merged[index] = mergeRuns(partitions[index].takeRuns());
+                return null;
+            });
+        }
+        try {
+            invokeAll(tasks);
+        } catch (IOException | RuntimeException e) {
+            for (Run run : merged) {
+                if (run != null)
+                    release(run);
+            }
+            throw e;
+        }
+        return merged;
+    }
+
+    /**
+     * Expands the positions of one segment.
+     */
+    private final class Expander {
+        private final LevelStats stats;
+        private final Partition[] next;
+        private final boolean keep; // False on the last level asked for: count moves but keep no successors
+        private final long[][] buffers;
+        private final int[] sizes;
+
+        Expander(LevelStats stats, Partition[] next, boolean keep) {
+            this.stats = stats;
+            this.next = next;
+            this.keep = keep;
+            this.buffers = new long[keep ? next.length : 0][BUFFER_LONGS];
+            this.sizes = new int[next.length];
+        }
+
+        void expand(LongSource source, long count) throws IOException {
+            long moves = 0, stalemates = 0;
+            int maxMoves = 0;
+            for (long i = 0; i < count; i++) {
+                long position = source.next();
+                int children = 0;
+                for (int jump = 0; jump < takeOff.length; jump++) {
+                    if ((position & takeOff[jump]) == takeOff[jump] && (position & landing[jump]) == 0) {
+                        children++;
+                        if (keep)
+                            add(position ^ takeOff[jump] ^ landing[jump]);
+                    }
+                }
+                moves += children;
+                maxMoves = Math.max(maxMoves, children);
+                if (children == 0 && stats.pegs > 1)
+                    stalemates++;
+            }
+            for (int k = 0; k < sizes.length; k++) {
+                flush(k);
+            }
+            stats.positions.add(count);
+            stats.moves.add(moves);
+            stats.stalemates.add(stalemates);
+            stats.maxMoves.accumulateAndGet(maxMoves, Math::max);
+        }
+
+        private void add(long child) throws IOException {
+            int k = partition(child);
+            buffers[k][sizes[k]++] = child;
+            if (sizes[k] == BUFFER_LONGS)
+                flush(k);
+        }
+
+        private void flush(int k) throws IOException {
+            int size = sizes[k];
+            if (size == 0)
+                return;
+            sizes[k] = 0;
+            long[] values = Arrays.copyOf(buffers[k], size);
+            Arrays.sort(values);
+            int unique = 1;
+            for (int i = 1; i < size; i++) {
+                if (values[i] != values[unique - 1])
+                    values[unique++] = values[i];
+            }
+            stats.successors.add(size);
+            next[k].add(store(values, unique));
+        }
+    }
+
+    /**
+     * The runs of one partition of the next level, added to by many expanders at once.
+     */
+    private final class Partition {
+        private final List<Run> runs = new ArrayList<>();
+        private int runsInMemory;
+
+        void add(Run run) throws IOException {
+            List<Run> compact = null;
+            synchronized (this) {
+                runs.add(run);
+                if (run.values != null && ++runsInMemory >= COMPACT_RUNS) {
+                    compact = new ArrayList<>(runsInMemory);
+                    for (int i = runs.size() - 1; i >= 0; i--) {
+                        if (runs.get(i).values != null)
+                            compact.add(runs.remove(i));
+                    }
+                    runsInMemory = 0;
+                }
+            }
+            if (compact != null) {
+                // Merge outside the lock so other expanders can keep adding
+                add(mergeRuns(compact));
+            }
+        }
+
+        synchronized List<Run> takeRuns() {
+            List<Run> taken = new ArrayList<>(runs);
+            runs.clear();
+            runsInMemory = 0;
+            return taken;
+        }
+    }
+
+    /**
+     * Merges sorted runs into one sorted run without duplicates, and frees the inputs.
+     */
+    private Run mergeRuns(List<Run> runs) throws IOException {
+        if (runs.isEmpty()) {
+            return Run.EMPTY;
+        }
+        if (runs.size() == 1) {
+            return runs.get(0);
+        }
+        List<LongSource> sources = new ArrayList<>(runs.size());
+        RunWriter out = null;
+        boolean finished = false;
+        try {
+            long total = 0;
+            for (Run run : runs) {
+                sources.add(run.open());
+                total += run.count;
+            }
+            out = new RunWriter(total);
+            MergeHeap heap = new MergeHeap(sources, runs);
+            long last = 0;
+            boolean any = false;
+            while (!heap.isEmpty()) {
+                long value = heap.pop();
+                if (!any || value != last) {
+                    out.add(value);
+                    last = value;
+                    any = true;
+                }
+            }
+            Run merged = out.finish();
+            finished = true;
+            return merged;
+        } finally {
+            if (out != null && !finished)
+                out.discard();
+            for (LongSource source : sources)
+                source.close();
+            for (Run run : runs)
+                release(run);
+        }
+    }
+
+    /**
+     * A min-heap of the next value of each source being merged.
+     */
+    private static final class MergeHeap {
+        private final LongSource[] sources;
+        private final long[] heads;
+        private final long[] remaining;
+        private final int[] heap;
+        private int size;
+
+        MergeHeap(List<LongSource> sources, List<Run> runs) throws IOException {
+            this.sources = sources.toArray(new LongSource[0]);
+            this.heads = new long[this.sources.length];
+            this.remaining = new long[this.sources.length];
+            this.heap = new int[this.sources.length];
+            for (int i = 0; i < this.sources.length; i++) {
+                remaining[i] = runs.get(i).count;
+                if (remaining[i] > 0) {
+                    heads[i] = this.sources[i].next();
+                    remaining[i]--;
+                    heap[size++] = i;
+                    siftUp(size - 1);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long pop() throws IOException {
+            int top = heap[0];
+            long value = heads[top];
+            if (remaining[top] > 0) {
+                heads[top] = sources[top].next();
+                remaining[top]--;
+            } else {
+                heap[0] = heap[--size];
+            }
+            siftDown(0);
+            return value;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heads[heap[parent]] <= heads[heap[i]])
+                    break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    return;
+                if (child + 1 < size && heads[heap[child + 1]] < heads[heap[child]])
+                    child++;
+                if (heads[heap[i]] <= heads[heap[child]])
+                    return;
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+
+    /**
+     * Collects a sorted run, on the heap while the memory budget allows and on disk after that.
+     */
+    private final class RunWriter {
+        private long[] values;
+        private int size;
+        private long reserved;
+        private SpillWriter spill;
+        private long count;
+
+        RunWriter(long expected) {
+            int initial = (int) Math.min(expected, BUFFER_LONGS);
+            if (reserve(initial)) {
+                this.values = new long[initial];
+                this.reserved = initial;
+            }
+        }
+
+        void add(long value) throws IOException {
+            count++;
+            if (spill != null) {
+                spill.write(value);
+                return;
+            }
+            if (values == null || size == values.length) {
+                if (!grow()) {
+                    spill = new SpillWriter(newSpillFile());
+                    for (int i = 0; i < size; i++)
+                        spill.write(values[i]);
+                    unreserve(reserved);
+                    values = null;
+                    spill.write(value);
+                    return;
+                }
+            }
+            values[size++] = value;
+        }
+
+        private boolean grow() {
+            if (values == null)
+                return false;
+            int more = Math.max(BUFFER_LONGS, values.length / 2);
+            if (values.length + (long) more > Integer.MAX_VALUE - 8 || !reserve(more))
+                return false;
+            values = Arrays.copyOf(values, values.length + more);
+            reserved += more;
+            return true;
+        }
+
+        Run finish() throws IOException {
+            if (spill != null) {
+                spill.close();
+                return new Run(spill.path, count);
+            }
+            if (values == null) {
+                return Run.EMPTY;
+            }
+            long[] exact = size == values.length ? values : Arrays.copyOf(values, size);
+            unreserve(reserved - size);
+            return new Run(exact, size);
+        }
+
+        /**
+         * Gives back the memory or spill file of a run that will not be finished.
+         */
+        void discard() throws IOException {
+            if (spill != null) {
+                spill.close();
+                Files.deleteIfExists(spill.path);
+            } else if (values != null) {
+                unreserve(reserved);
+                values = null;
+            }
+        }
+    }
+
+    /**
+     * Keeps a freshly sorted buffer as a run, on the heap if the budget allows.
+     */
+    private Run store(long[] values, int count) throws IOException {
+        if (reserve(count)) {
+            return new Run(count == values.length ? values : Arrays.copyOf(values, count), count);
+        }
+        try (SpillWriter spill = new SpillWriter(newSpillFile())) {
+            for (int i = 0; i < count; i++)
+                spill.write(values[i]);
+            return new Run(spill.path, count);
+        }
+    }
+
+    private boolean reserve(long longs) {
+        if (inMemory.addAndGet(longs) > memoryBudget && longs > 0) {
+            inMemory.addAndGet(-longs);
+            return false;
+        }
+        return true;
+    }
+
+    private void unreserve(long longs) {
+        inMemory.addAndGet(-longs);
+    }
+
+    private void release(Run run) throws IOException {
+        if (run.values != null) {
+            unreserve(run.count);
+        } else if (run.file != null) {
+            Files.deleteIfExists(run.file);
+        }
+    }
+
+    private synchronized Path newSpillFile() throws IOException {
+        if (spillRoot == null) {
+            spillRoot = Files.createTempDirectory(spillDirectory, "peg-positions");
+        }
+        spillFiles.incrementAndGet();
+        return Files.createTempFile(spillRoot, "run", ".bin");
+    }
+
+    private synchronized void deleteSpillRoot() throws IOException {
+        if (spillRoot != null) {
+            try (Stream<Path> files = Files.list(spillRoot)) {
+                for (Path file : (Iterable<Path>) files::iterator)
+                    Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spillRoot);
+            spillRoot = null;
+        }
+    }
+
+    private int partition(long position) {
+        long mix = position * 0x9E3779B97F4A7C15L;
+        return (int) (mix >>> (Long.SIZE - partitionBits));
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) throws IOException {
+        try {
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while enumerating positions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Enumeration failed", e.getCause());
+        }
+    }
+
+    /**
+     * A sorted run of distinct positions, either on the heap or in a spill file.
+     */
+    private static final class Run {
+        static final Run EMPTY = new Run(new long[0], 0);
+
+        final long[] values; // Null if spilled
+        final Path file; // Null if on the heap
+        final long count;
+
+        Run(long[] values, long count) {
+            this.values = values;
+            this.file = null;
+            this.count = count;
+        }
+
+        Run(Path file, long count) {
+            this.values = null;
+            this.file = file;
+            this.count = count;
+        }
+
+        LongSource open() throws IOException {
+            return values != null ? new ArraySource(values, 0, (int) count) : new SpillReader(file);
+        }
+    }
+
+    /**
+     * Reads the positions of a run in order. The caller knows how many there are.
+     */
+    private interface LongSource extends Closeable {
+        long next() throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private static final class ArraySource implements LongSource {
+        private final long[] values;
+        private int next;
+        private final int end;
+
+        ArraySource(long[] values, int start, int end) {
+            this.values = values;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public long next() {
+            if (next == end)
+                throw new IllegalStateException("Run exhausted");
+            return values[next++];
+        }
+    }
+
+    /**
+     * Writes a run as the difference from each position to the one before, the first from
+     * Long.MIN_VALUE, seven bits to a byte with the high bit set on all but the last byte.
+     */
+    private static final class SpillWriter implements Closeable {
+        final Path path;
+        private final OutputStream out;
+        private final byte[] buffer = new byte[IO_BUFFER];
+        private int size;
+        private long last = Long.MIN_VALUE;
+
+        SpillWriter(Path path) throws IOException {
+            this.path = path;
+            this.out = new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER);
+        }
+
+        void write(long value) throws IOException {
+            if (size > buffer.length - 10) {
+                out.write(buffer, 0, size);
+                size = 0;
+            }
+            long delta = value - last;
+            last = value;
+            while ((delta & ~0x7FL) != 0) {
+                buffer[size++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            buffer[size++] = (byte) delta;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write(buffer, 0, size);
+            out.close();
+        }
+    }
+
+    private static final class SpillReader implements LongSource {
+        private final InputStream in;
+        private final byte[] buffer = new byte[IO_BUFFER];
+        private int next;
+        private int size;
+        private long last = Long.MIN_VALUE;
+
+        SpillReader(Path path) throws IOException {
+            this.in = new BufferedInputStream(Files.newInputStream(path), IO_BUFFER);
+        }
+
+        @Override
+        public long next() throws IOException {
+            long delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (next == size) {
+                    size = in.read(buffer);
+                    next = 0;
+                    if (size <= 0)
+                        throw new EOFException("Spilled run is truncated");
+                }
+                byte b = buffer[next++];
+                delta |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            last += delta;
+            return last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * The positions of one level and what can be done from them.
+     */
+    public static final class LevelStats {
+        final int pegs;
+        final LongAdder positions = new LongAdder();
+        final LongAdder moves = new LongAdder();
+        final LongAdder stalemates = new LongAdder();
+        final LongAdder successors = new LongAdder();
+        final AtomicLong maxMoves = new AtomicLong();
+
+        LevelStats(int pegs) {
+            this.pegs = pegs;
+        }
+
+        public int getPegs() {
+            return pegs;
+        }
+
+        /**
+         * @return The number of distinct positions with this many pegs.
+         */
+        public long getPositions() {
+            return positions.sum();
+        }
+
+        /**
+         * @return The number of legal moves summed over every position of the level.
+         */
+        public long getMoves() {
+            return moves.sum();
+        }
+
+        /**
+         * @return The average number of legal moves per position.
+         */
+        public double getBranchingFactor() {
+            long count = getPositions();
+            return count == 0 ? 0 : (double) getMoves() / count;
+        }
+
+        public int getMaxMoves() {
+            return (int) maxMoves.get();
+        }
+
+        /**
+         * @return The number of positions with more than one peg and no legal move.
+         */
+        public long getStalemates() {
+            return stalemates.sum();
+        }
+
+        /**
+         * @return The number of successors generated before duplicates were dropped, or 0 on the last level asked for.
+         */
+        public long getSuccessors() {
+            return successors.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%3d pegs: %,d positions, branching %.2f (max %d), %,d stalemates",
+                    pegs, getPositions(), getBranchingFactor(), getMaxMoves(), getStalemates());
+        }
+    }
+}
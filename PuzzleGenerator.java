@@ -0,0 +1,258 @@
+package PegGamee;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates starting layouts on a square board that can be won in exactly a given number
+ * of ways, one by default, and writes them in the FileUtil text format.
+ *
+ * A candidate is built by playing moves backward from a single peg: a backward jump takes
+ * a peg off its landing cell and puts pegs on the cells it started from and jumped over.
+ * Every position reached this way can be won along the path back to the single peg. A
+ * position has at least as many winning lines as any position one move after it, so the
+ * walk only takes backward jumps whose result still has no more winning lines than asked
+ * for, and gives up when there are none.
+ *
+ * Winning lines are counted by a bounded solver on positions packed into a long, with
+ * moves from the BoardGeometry jump table, which are SqrBoard's rules. Counts stop at one
+ * more than the target, and a count that needs more than a node budget rejects the
+ * candidate. Each worker caches the counts of the sub-positions it has classified, so the
+ * positions near the end of the game, which every candidate shares, are counted once.
+ * Workers run their own walks with their own SplittableRandom, split from one root so a
+ * seeded run is repeatable up to the order the workers finish in. Puzzles equal to one
+ * already written under a rotation or reflection are skipped.
+ *
+ * Usage: {@code java PegGamee.PuzzleGenerator <output directory> <count> [size] [min pegs] [max pegs] [solutions] [workers]}
+ */
+public class PuzzleGenerator {
+
+    private static final int CACHE_BITS = 20;
+    private static final long NODE_BUDGET = 1 << 20; // Nodes one count may visit before its candidate is rejected
+
+    private final int size;
+    private final int minPegs;
+    private final int maxPegs;
+    private final int solutions;
+    private final int workers;
+    private final long[] takeOff; // Per jump, the starting and jumped-over cells
+    private final long[] landing; // Per jump, the landing cell
+    private final LongAdder attempts = new LongAdder();
+
+    /**
+     * Constructs a generator.
+     *
+     * @param size      The number of rows and columns of the board, at most 8.
+     * @param minPegs   The fewest pegs a puzzle may start with.
+     * @param maxPegs   The most pegs a puzzle may start with.
+     * @param solutions The number of distinct winning move sequences each puzzle must have.
+     * @param workers   The number of candidates built at the same time.
+     */
+    public PuzzleGenerator(int size, int minPegs, int maxPegs, int solutions, int workers) {
+        if (size < 3 || size * size > Long.SIZE) {
+            throw new IllegalArgumentException("Puzzle boards must be 3x3 to 8x8, not " + size + "x" + size);
+        }
+        if (minPegs < 2 || minPegs > maxPegs || maxPegs >= size * size) {
+            throw new IllegalArgumentException("Peg counts must satisfy 2 <= min <= max < " + size * size);
+        }
+        if (solutions < 1) {
+            throw new IllegalArgumentException("A puzzle needs at least one solution");
+        }
+        this.size = size;
+        this.minPegs = minPegs;
+        this.maxPegs = maxPegs;
+        this.solutions = solutions;
+        this.workers = workers;
+        BoardGeometry geometry = BoardGeometry.square(size, size);
+        this.takeOff = new long[geometry.getJumpCount()];
+        this.landing = new long[geometry.getJumpCount()];
+        for (int jump = 0; jump < takeOff.length; jump++) {
+            takeOff[jump] = 1L << geometry.getJumpFrom(jump) | 1L << geometry.getJumpOver(jump);
+            landing[jump] = 1L << geometry.getJumpTo(jump);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: PuzzleGenerator <output directory> <count> [size] [min pegs] [max pegs] [solutions] [workers]");
+            System.exit(2);
+        }
+        Path directory = Paths.get(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        int minPegs = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int maxPegs = args.length > 4 ? Integer.parseInt(args[4]) : Math.max(minPegs, 14);
+        int solutions = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int workers = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+
+        long begin = System.nanoTime();
+        PuzzleGenerator generator = new PuzzleGenerator(size, minPegs, maxPegs, solutions, workers);
+        int written = generator.run(directory, count, System.nanoTime());
+        long millis = Math.max(1, (System.nanoTime() - begin) / 1_000_000);
+        System.err.println("Wrote " + written + " puzzles in " + millis + " ms (" + written * 60_000L / millis
+                + " per minute) from " + generator.getAttempts() + " candidates");
+    }
+
+    /**
+     * Generates puzzles and writes each one to its own file in a directory as soon as it is verified.
+     *
+     * @param directory The directory to write to, created if needed.
+     * @param count     The number of puzzles to write.
+     * @param seed      The seed of the random walks.
+     * @return The number of puzzles written.
+     * @throws IOException If a puzzle cannot be written.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    public int run(Path directory, int count, long seed) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        AtomicInteger written = new AtomicInteger();
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            Worker worker = new Worker(root.split());
+            tasks.add(() -> {
+                while (written.get() < count) {
+                    boolean[][] board = worker.next();
+                    if (board == null || !seen.add(new BitBoard(board).canonicalKey()))
+                        continue;
+                    int index = written.getAndIncrement();
+                    if (index >= count)
+                        break;
+                    FileUtil.saveGameBoard(directory.resolve(String.format("puzzle-%dx%d-%05d.txt", size, size, index)), board);
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Puzzle generation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return Math.min(written.get(), count);
+    }
+
+    /**
+     * Builds one candidate with a single worker.
+     *
+     * @param random Where the walk's choices come from.
+     * @return A verified puzzle, or null if the walk got stuck before reaching its peg count.
+     */
+    public boolean[][] generate(SplittableRandom random) {
+        return new Worker(random).next();
+    }
+
+    /**
+     * @return The number of candidates built so far, including the ones that were rejected.
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * Builds candidates on one thread, with its own random numbers and its own cache.
+     */
+    private final class Worker {
+        private final SplittableRandom random;
+        private final long[] cacheKeys = new long[1 << CACHE_BITS]; // 0 for an empty slot, no position has no pegs
+        private final int[] cacheCounts = new int[1 << CACHE_BITS];
+        private final int[] candidates = new int[takeOff.length];
+        private long nodes;
+
+        Worker(SplittableRandom random) {
+            this.random = random;
+        }
+
+        boolean[][] next() {
+            attempts.increment();
+            int targetPegs = minPegs + random.nextInt(maxPegs - minPegs + 1);
+            long position = 1L << random.nextInt(size * size);
+            int lines = 1;
+            for (int pegs = 1; pegs < targetPegs; pegs++) {
+                int count = 0;
+                for (int jump = 0; jump < takeOff.length; jump++) {
+                    if ((position & landing[jump]) != 0 && (position & takeOff[jump]) == 0)
+                        candidates[count++] = jump;
+                }
+                lines = -1;
+                // Try the backward jumps in random order, keeping the first one that is still unique enough
+                while (count > 0 && lines < 0) {
+                    int pick = random.nextInt(count);
+                    int jump = candidates[pick];
+                    candidates[pick] = candidates[--count];
+                    long before = position ^ takeOff[jump] ^ landing[jump];
+                    nodes = 0;
+                    int found = countLines(before, pegs + 1);
+                    if (found >= 0 && found <= solutions) {
+                        position = before;
+                        lines = found;
+                    }
+                }
+                if (lines < 0)
+                    return null;
+            }
+            return lines == solutions ? unpack(position) : null;
+        }
+
+        /**
+         * Counts the move sequences that win from a position, stopping at one more than the target.
+         *
+         * @return The count, or -1 if it needed more than the node budget.
+         */
+        private int countLines(long position, int pegs) {
+            if (pegs == 1)
+                return 1;
+            int slot = (int) (position * 0x9E3779B97F4A7C15L >>> (Long.SIZE - CACHE_BITS));
+            if (cacheKeys[slot] == position)
+                return cacheCounts[slot];
+            if (++nodes > NODE_BUDGET)
+                return -1;
+            int limit = solutions + 1;
+            int total = 0;
+            for (int jump = 0; jump < takeOff.length && total < limit; jump++) {
+                if ((position & takeOff[jump]) == takeOff[jump] && (position & landing[jump]) == 0) {
+                    int lines = countLines(position ^ takeOff[jump] ^ landing[jump], pegs - 1);
+                    if (lines < 0)
+                        return -1; // Not classified, so not cached
+                    total = Math.min(limit, total + lines);
+                }
+            }
+            cacheKeys[slot] = position;
+            cacheCounts[slot] = total;
+            return total;
+        }
+    }
+
+    private boolean[][] unpack(long position) {
+        boolean[][] board = new boolean[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                board[row][col] = (position >>> (row * size + col) & 1) != 0;
+            }
+        }
+        return board;
+    }
+}
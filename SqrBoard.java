@@ -1,6 +1,13 @@
 package PegGamee;
 
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -14,8 +21,26 @@ import java.util.List;
 
 public class SqrBoard implements PegGame {
 
+    private static final int[] ROW_STEP = PackedMove.ROW_STEP;
+    private static final int[] COL_STEP = PackedMove.COL_STEP;
+    private static final int TEXT_BATCH_BYTES = 64 * 1024; // Bytes rendered per channel write by writeTo
+
     private boolean[][] gameboard; // True if a peg is present, false if it's empty 
     private GameState gameState;
+    private int pegCount; // Number of pegs on the board, kept up to date by makeMove
+    private final boolean[] legalMoves; // Indexed by packed move, see PackedMove
+    private int legalMoveCount;
+    private int[] history = new int[16]; // Packed moves made so far, followed by moves that can be redone
+    private int historySize; // Number of moves made
+    private int redoLimit; // historySize plus the number of moves that can be redone
+    private final Zobrist zobrist;
+    private final long[] hashes; // Zobrist hash of the board under each rotation and reflection
+    private BoardListener[] listeners = new BoardListener[0];
+    private int rejectedMoves; // Number of invalid moves passed to makeMove
+    private BoardSnapshot snapshot; // Snapshot of the current position, or null if there has been a move since
+    private EndgameDatabase endgame; // Reports positions with few pegs that cannot be won as a stalemate, may be null
+    private long[] pegWords; // The pegs as a bitset, bit (row * cols + col), kept only while an endgame database is in use
+    private PositionAnalyzer analyzer; // Reports lost positions as a stalemate before the moves run out, may be null
 
     /**
      * Constructs a square board for a Peg Game.
@@ -26,28 +51,63 @@ public class SqrBoard implements PegGame {
     public SqrBoard(boolean[][] board) {
         this.gameboard = board;
         this.gameState = GameState.NOT_STARTED;
+        this.zobrist = Zobrist.forSize(board.length, board.length == 0 ? 0 : board[0].length);
+        this.hashes = zobrist.hash(board);
+        int cols = board.length == 0 ? 0 : board[0].length;
+        this.legalMoves = new boolean[board.length * cols * 4];
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (board[row][col])
+                    pegCount++;
+                for (int dir = 0; dir < 4; dir++)
+                    refreshMove(row, col, dir);
+            }
+        }
+        updateGameState();
+        EngineMetrics.gameStarted();
+    }
+
+    /**
+     * Constructs a square board together with the moves that led to it, so they can be undone.
+     *
+     * @param board The current configuration of the board where 'true' represents a peg, and 'false' represents an empty space.
+     * @param moveHistory The packed moves, oldest first, that led to this configuration.
+     * @throws IllegalArgumentException If taking the moves back from the last one does not work on this board.
+     */
+    public SqrBoard(boolean[][] board, int[] moveHistory) {
+        this(board);
+        int invalid = PackedMove.findInvalidMove(board, moveHistory);
+        if (invalid >= 0) {
+            throw new IllegalArgumentException("Move " + (invalid + 1) + " of the history does not lead to this board");
+        }
+        this.history = Arrays.copyOf(moveHistory, Math.max(16, moveHistory.length));
+        this.historySize = moveHistory.length;
+        this.redoLimit = moveHistory.length;
     }
     
     /**
      * Gets the current game state based on the number of pegs and possible moves.
+     * The state is worked out once per position, when a move, undo or redo reaches it,
+     * so this takes constant time even with an endgame database or analyzer attached.
      * 
      * @return The current game state.
      */
     @Override
     @Test
     public GameState getGameState() {
-        int NumofPegs = 0;
-        for (boolean[] row : gameboard) {
-            for (boolean peg : row) {
-                if (peg) 
-                    NumofPegs++;
-            }
-        }
+        long start = EngineMetrics.start();
+        GameState state = gameState;
+        EngineMetrics.GAME_STATE.stop(start);
+        return state;
+    }
 
-        Collection<Move> possibleMoves = getPossibleMoves();
-        if (NumofPegs == 1) {
+    /**
+     * Works out the game state of the current position and stores it for getGameState and isLost.
+     */
+    private GameState updateGameState() {
+        if (pegCount == 1) {
             gameState = GameState.WON;
-        } else if (possibleMoves.isEmpty()) {
+        } else if (legalMoveCount == 0 || isProvenLost()) {
             gameState = GameState.STALEMATE;
         } else {
             gameState = GameState.IN_PROGRESS;
@@ -55,6 +115,16 @@ public class SqrBoard implements PegGame {
         return gameState;
     }
 
+    /**
+     * @return True if the endgame database or the position analyzer proves that more than one peg must remain.
+     */
+    private boolean isProvenLost() {
+        if (endgame != null && pegCount >= 1 && pegCount <= endgame.getMaxPegs() && !endgame.isWinnable(pegWords)) {
+            return true;
+        }
+        return analyzer != null && analyzer.analyze(gameboard) != null;
+    }
+
     /**
      * Checks if a move from one location to another is a valid move.
      * 
@@ -67,29 +137,29 @@ public class SqrBoard implements PegGame {
     @Test
 
     public boolean isValidMove(Location from, Location to) {
-        int midRow = (from.getRow() + to.getRow()) / 2;
-        int midCol = (from.getCol() + to.getCol()) / 2;
-    
-        // Check bounds
-        if (from.getRow() < 0 || from.getRow() >= gameboard.length || from.getCol() < 0 || from.getCol() >= gameboard[0].length ||
-            to.getRow() < 0 || to.getRow() >= gameboard.length || to.getCol() < 0 || to.getCol() >= gameboard[0].length ||
-            midRow < 0 || midRow >= gameboard.length || midCol < 0 || midCol >= gameboard[0].length) {
+        long start = EngineMetrics.start();
+        boolean valid = checkMove(from, to);
+        EngineMetrics.VALID_MOVE.stop(start);
+        return valid;
+    }
+
+    /**
+     * Checks a move against the table of legal moves. Only the starting cell needs a bounds
+     * check: a move whose jumped-over or landing cell is off the board is never legal.
+     */
+    private boolean checkMove(Location from, Location to) {
+        int rows = gameboard.length, cols = rows == 0 ? 0 : gameboard[0].length;
+        int row = from.getRow(), col = from.getCol();
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
             return false;
         }
-    
         // Distance must be exactly two cells in a straight line
-        boolean isHorizontalMove = from.getRow() == to.getRow() && Math.abs(from.getCol() - to.getCol()) == 2;
-        boolean isVerticalMove = from.getCol() == to.getCol() && Math.abs(from.getRow() - to.getRow()) == 2;
-    
-        // Check that 'from' has a peg, 'to' is empty, and 'mid' has a peg
-        boolean isFromPeg = gameboard[from.getRow()][from.getCol()];
-        boolean isToEmpty = !gameboard[to.getRow()][to.getCol()];
-        boolean isMidPeg = gameboard[midRow][midCol];
-    
-        return (isHorizontalMove || isVerticalMove) && isFromPeg && isToEmpty && isMidPeg;
+        int dRow = to.getRow() - row, dCol = to.getCol() - col;
+        if (!((dRow == 0 && Math.abs(dCol) == 2) || (dCol == 0 && Math.abs(dRow) == 2))) {
+            return false;
+        }
+        return legalMoves[PackedMove.encode(row * cols + col, PackedMove.direction(from, to))];
     }
-    
-    
 
     /**
      * Adds a valid move to the provided list of moves.
@@ -105,7 +175,7 @@ public class SqrBoard implements PegGame {
         Location from = new Location(fromRow, fromCol);
         Location to = new Location(toRow, toCol);
     
-        if (isValidMove(from, to)) {
+        if (checkMove(from, to)) {
             movesList.add(new Move(from, to));
         }
     }
@@ -118,25 +188,15 @@ public class SqrBoard implements PegGame {
     @Override
     @Test
     public Collection<Move> getPossibleMoves() {
-        List<Move> possibleMoves = new ArrayList<>();
-        for (int row = 0; row < gameboard.length; row++) {
-            for (int col = 0; col < gameboard[row].length; col++) {
-                if (gameboard[row][col]) { // If there's a peg at this position
-                    // Check and add valid moves in all directions directly here
-
-                    AddValidMove(row, col, row, col + 2, possibleMoves); // Right
-                    AddValidMove(row, col, row, col - 2, possibleMoves); // Left
-                    AddValidMove(row, col, row + 2, col, possibleMoves); // Down
-                    AddValidMove(row, col, row - 2, col, possibleMoves); // Up
-                    
-                    // Diagonal Moves
-                    AddValidMove(row, col, row - 2, col - 2, possibleMoves); // Diagonal Up-Left
-                    AddValidMove(row, col, row - 2, col + 2, possibleMoves); // Diagonal Up-Right
-                    AddValidMove(row, col, row + 2, col - 2, possibleMoves); // Diagonal Down-Left
-                    AddValidMove(row, col, row + 2, col + 2, possibleMoves); // Diagonal Down-Right
-                }
-            }
+        long start = EngineMetrics.start();
+        // legalMoves is a flat table of every jump on the board, so this is a single scan with no bounds checks
+        List<Move> possibleMoves = new ArrayList<>(legalMoveCount);
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        for (int move = 0; move < legalMoves.length; move++) {
+            if (legalMoves[move])
+                possibleMoves.add(PackedMove.toMove(move, cols));
         }
+        EngineMetrics.POSSIBLE_MOVES.stop(start);
         return possibleMoves;
     }
 
@@ -148,22 +208,420 @@ public class SqrBoard implements PegGame {
      */
     @Override
     @Test
-    public void makeMove(Move move) throws PegGameException {
+    public synchronized void makeMove(Move move) throws PegGameException {
+        long start = EngineMetrics.start();
         Location fromLocation = move.getFrom();
         Location toLocation = move.getTo();
-        int midRow = (fromLocation.getRow() + toLocation.getRow()) / 2;
-        int midCol = (fromLocation.getCol() + toLocation.getCol()) / 2;
 
-        if (!isValidMove(fromLocation, toLocation)) { 
+        if (!checkMove(fromLocation, toLocation)) { 
+            rejectedMoves++;
+            EngineMetrics.move(start, fromLocation.getRow(), fromLocation.getCol(), toLocation.getRow(), toLocation.getCol(), false, pegCount);
+            throw new PegGameException("Invalid move");
+        }
+
+        int cols = gameboard[0].length;
+        int packed = PackedMove.encode(fromLocation.getRow() * cols + fromLocation.getCol(),
+                                       PackedMove.direction(fromLocation, toLocation));
+        jump(packed, false);
+        record(packed);
+        EngineMetrics.move(start, fromLocation.getRow(), fromLocation.getCol(), toLocation.getRow(), toLocation.getCol(), true, pegCount);
+        fireMove(packed, false);
+    }
+
+    /**
+     * Writes every possible move on the current board into the given array, packed as
+     * described in PackedMove, in the same order as getPossibleMoves(). Nothing is allocated.
+     *
+     * @param moves The array to fill, large enough for every legal move.
+     * @return The number of moves written.
+     */
+    public int getPossibleMoves(int[] moves) {
+        long start = EngineMetrics.start();
+        int count = 0;
+        for (int move = 0; move < legalMoves.length; move++) {
+            if (legalMoves[move])
+                moves[count++] = move;
+        }
+        EngineMetrics.POSSIBLE_MOVES.stop(start);
+        return count;
+    }
+
+    /**
+     * Writes every possible move on the current board into the given buffer, packed as
+     * described in PackedMove, in the same order as getPossibleMoves(). Nothing is allocated.
+     *
+     * @param moves The buffer to fill from its current position.
+     * @return The number of moves written.
+     * @throws java.nio.BufferOverflowException If the buffer has no room for every legal move.
+     */
+    public int getPossibleMoves(IntBuffer moves) {
+        long start = EngineMetrics.start();
+        int count = 0;
+        for (int move = 0; move < legalMoves.length; move++) {
+            if (legalMoves[move]) {
+                moves.put(move);
+                count++;
+            }
+        }
+        EngineMetrics.POSSIBLE_MOVES.stop(start);
+        return count;
+    }
+
+    /**
+     * Makes a packed move on the board.
+     *
+     * @param move The packed move to be made.
+     * @throws PegGameException If the move is invalid.
+     */
+    public synchronized void makeMove(int move) throws PegGameException {
+        long start = EngineMetrics.start();
+        if (move < 0 || move >= legalMoves.length || !legalMoves[move]) {
+            rejectedMoves++;
+            if (start != EngineMetrics.DISABLED)
+                recordMove(start, move, false);
+            throw new PegGameException("Invalid move");
+        }
+        jump(move, false);
+        record(move);
+        if (start != EngineMetrics.DISABLED)
+            recordMove(start, move, true);
+        fireMove(move, false);
+    }
+
+    /**
+     * Sends a packed move made or rejected to EngineMetrics, working out its cells.
+     */
+    private void recordMove(long start, int move, boolean accepted) {
+        int cols = gameboard[0].length;
+        int from = PackedMove.fromIndex(move), dir = PackedMove.direction(move);
+        int row = from / cols, col = from % cols;
+        EngineMetrics.move(start, row, col, row + 2 * ROW_STEP[dir], col + 2 * COL_STEP[dir], accepted, pegCount);
+    }
+
+    /**
+     * Takes back a packed move: the peg returns to its starting cell and the jumped-over peg is put back.
+     * Taking back the last move made is the same as undoMove(); taking back any other move clears the
+     * move history, since it no longer leads to the current board.
+     *
+     * @param move The packed move to take back.
+     * @throws PegGameException If the move cannot have been the last one made.
+     */
+    public synchronized void undoMove(int move) throws PegGameException {
+        if (move < 0 || move >= legalMoves.length) {
             throw new PegGameException("Invalid move");
         }
+        int from = PackedMove.fromIndex(move);
+        int dir = PackedMove.direction(move);
+        int cols = gameboard[0].length;
+        int row = from / cols, col = from % cols;
+        int toRow = row + 2 * ROW_STEP[dir], toCol = col + 2 * COL_STEP[dir];
+        if (toRow < 0 || toRow >= gameboard.length || toCol < 0 || toCol >= cols
+                || gameboard[row][col] || gameboard[row + ROW_STEP[dir]][col + COL_STEP[dir]] || !gameboard[toRow][toCol]) {
+            throw new PegGameException("Invalid move");
+        }
+        jump(move, true);
+        if (historySize > 0 && history[historySize - 1] == move) {
+            historySize--;
+        } else {
+            historySize = 0;
+            redoLimit = 0;
+        }
+        fireMove(move, true);
+    }
+
+    /**
+     * Takes back the last move made.
+     *
+     * @return The packed move that was taken back.
+     * @throws PegGameException If no move has been made.
+     */
+    public synchronized int undoMove() throws PegGameException {
+        if (historySize == 0) {
+            throw new PegGameException("No move to undo");
+        }
+        int move = history[--historySize];
+        jump(move, true);
+        fireMove(move, true);
+        return move;
+    }
+
+    /**
+     * Makes again the last move taken back by undoMove(). Making any other move clears the moves that can be redone.
+     *
+     * @return The packed move that was made.
+     * @throws PegGameException If there is no move to redo.
+     */
+    public synchronized int redoMove() throws PegGameException {
+        if (historySize == redoLimit) {
+            throw new PegGameException("No move to redo");
+        }
+        int move = history[historySize++];
+        jump(move, false);
+        fireMove(move, false);
+        return move;
+    }
+
+    /**
+     * Gets the moves made so far, not counting moves that were undone.
+     *
+     * @return The packed moves, oldest first.
+     */
+    public int[] getMoveHistory() {
+        return Arrays.copyOf(history, historySize);
+    }
+
+    /**
+     * Uses an endgame database to end the game early: once few enough pegs are left for the
+     * database to cover and it says a single peg cannot be reached, the game state is
+     * STALEMATE even if moves remain.
+     *
+     * @param endgame The database, built for the square geometry of this board's size, or null to stop using one.
+     * @throws IllegalArgumentException If the database was built for another board.
+     */
+    public void setEndgameDatabase(EndgameDatabase endgame) {
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        if (endgame != null && !endgame.fitsSquareBoard(gameboard.length, cols)) {
+            throw new IllegalArgumentException("The endgame database was built for the " + endgame.getGeometry() + " board");
+        }
+        this.endgame = endgame;
+        this.pegWords = endgame == null ? null : packPegs();
+        updateGameState();
+    }
+
+    /**
+     * Uses a PositionAnalyzer to end the game early: once the analyzer proves the position
+     * lost, the game state is STALEMATE even if moves remain. Each move, undo and redo then
+     * costs one analysis; asking for the state afterwards costs none.
+     *
+     * @param analyzer The analyzer, made for this board's size, or null to report a stalemate only when no move is left.
+     * @throws IllegalArgumentException If the analyzer was made for another size.
+     */
+    public void setPositionAnalyzer(PositionAnalyzer analyzer) {
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        if (analyzer != null && (analyzer.getRows() != gameboard.length || analyzer.getCols() != cols)) {
+            throw new IllegalArgumentException("The analyzer was made for a " + analyzer.getRows() + "x" + analyzer.getCols() + " board");
+        }
+        this.analyzer = analyzer;
+        updateGameState();
+    }
+
+    /**
+     * Checks if the game is known to be lost: no move is left while more than one peg is, the
+     * endgame database covers the current peg count and says a single peg cannot be reached,
+     * or the position analyzer proves it lost. This is exactly when getGameState() reports a
+     * stalemate.
+     *
+     * @return True if the game can no longer be won, false if it can or if that is not known.
+     */
+    public boolean isLost() {
+        return pegCount > 1 && gameState == GameState.STALEMATE;
+    }
+
+    /**
+     * Gets the number of pegs on the board, kept up to date by makeMove.
+     *
+     * @return The number of pegs.
+     */
+    public int getPegCount() {
+        return pegCount;
+    }
+
+    /**
+     * Gets the number of invalid moves passed to makeMove on this board, whether or not metrics are enabled.
+     *
+     * @return The number of rejected moves.
+     */
+    public int getRejectedMoveCount() {
+        return rejectedMoves;
+    }
+
+    public boolean canUndo() {
+        return historySize > 0;
+    }
+
+    public boolean canRedo() {
+        return historySize < redoLimit;
+    }
+
+    /**
+     * Appends a move to the history, dropping any moves that could have been redone.
+     *
+     * @param move The packed move that was made.
+     */
+    private void record(int move) {
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+        }
+        history[historySize++] = move;
+        redoLimit = historySize;
+    }
+
+    /**
+     * Makes or takes back a packed move, see {@link #jump(int, int, int, boolean)}.
+     */
+    private void jump(int move, boolean undo) {
+        int from = PackedMove.fromIndex(move);
+        int cols = gameboard[0].length;
+        jump(from / cols, from % cols, PackedMove.direction(move), undo);
+    }
+
+    /**
+     * Moves a peg two cells in a direction over another peg, or takes such a move back,
+     * and updates the peg count, legal moves, Zobrist keys and game state. The move must
+     * already have been checked. Listeners are told by the caller, once the history is
+     * up to date too.
+     *
+     * @param row  The row coordinate of the starting cell.
+     * @param col  The column coordinate of the starting cell.
+     * @param dir  The direction of the jump.
+     * @param undo True to take the move back instead of making it.
+     */
+    private void jump(int row, int col, int dir, boolean undo) {
+        int midRow = row + ROW_STEP[dir], midCol = col + COL_STEP[dir];
+        int toRow = midRow + ROW_STEP[dir], toCol = midCol + COL_STEP[dir];
+
+        gameboard[row][col] = undo; // Remove the jumping peg
+        gameboard[midRow][midCol] = undo; // Remove the jumped over peg
+        gameboard[toRow][toCol] = !undo; // Place the peg in the new location
+        int cols = gameboard[0].length;
+        zobrist.toggle(hashes, row * cols + col, midRow * cols + midCol, toRow * cols + toCol);
+        pegCount += undo ? 1 : -1;
+        if (pegWords != null) {
+            flipWord(row * cols + col);
+            flipWord(midRow * cols + midCol);
+            flipWord(toRow * cols + toCol);
+        }
+        snapshot = null;
+        refreshMovesAround(row, col);
+        refreshMovesAround(midRow, midCol);
+        refreshMovesAround(toRow, toCol);
 
-        gameboard[fromLocation.getRow()][fromLocation.getCol()] = false; // Remove the jumping peg
-        gameboard[midRow][midCol] = false; // Remove the jumped over peg
-        gameboard[toLocation.getRow()][toLocation.getCol()] = true; // Place the peg in the new location
-        
         // Update the game state after the move
-        getGameState();
+        updateGameState();
+    }
+
+    /**
+     * Tells every listener about the three cells a move changed and then about the move.
+     * The board and its history are already up to date, so a listener that throws cannot
+     * leave them out of step: the other listeners are still told, and the first exception
+     * is rethrown afterwards.
+     *
+     * @param move The packed move.
+     * @param undo True if the move was taken back rather than made.
+     */
+    private void fireMove(int move, boolean undo) {
+        if (listeners.length == 0) {
+            return;
+        }
+        int cols = gameboard[0].length;
+        int from = PackedMove.fromIndex(move), dir = PackedMove.direction(move);
+        int row = from / cols, col = from % cols;
+        int midRow = row + ROW_STEP[dir], midCol = col + COL_STEP[dir];
+        int toRow = midRow + ROW_STEP[dir], toCol = midCol + COL_STEP[dir];
+        RuntimeException failure = null;
+        for (BoardListener listener : listeners) {
+            try {
+                listener.cellChanged(row, col, undo);
+                listener.cellChanged(midRow, midCol, undo);
+                listener.cellChanged(toRow, toCol, !undo);
+                listener.moveMade(move, undo);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private long[] packPegs() {
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        long[] words = new long[Math.max(1, (gameboard.length * cols + 63) >>> 6)];
+        for (int row = 0; row < gameboard.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                if (gameboard[row][col])
+                    words[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return words;
+    }
+
+    private void flipWord(int cell) {
+        pegWords[cell >>> 6] ^= 1L << cell;
+    }
+
+    /**
+     * Registers a listener to be told about every cell changed by a move, undo or redo,
+     * and about the move itself. A GameJournal added here records the whole game. If a
+     * listener throws, the move still stands and the exception reaches the caller of
+     * makeMove, undoMove or redoMove.
+     *
+     * @param listener The listener to add.
+     */
+    public void addBoardListener(BoardListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Removes a listener added with addBoardListener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeBoardListener(BoardListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                BoardListener[] remaining = new BoardListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Re-checks every move that starts, jumps over or lands on the given cell,
+     * which are the only moves a change to that cell can affect.
+     *
+     * @param row The row coordinate of the changed cell.
+     * @param col The column coordinate of the changed cell.
+     */
+    private void refreshMovesAround(int row, int col) {
+        for (int dir = 0; dir < 4; dir++) {
+            for (int k = 0; k <= 2; k++) {
+                int fromRow = row - k * ROW_STEP[dir];
+                int fromCol = col - k * COL_STEP[dir];
+                if (fromRow >= 0 && fromRow < gameboard.length && fromCol >= 0 && fromCol < gameboard[0].length)
+                    refreshMove(fromRow, fromCol, dir);
+            }
+        }
+    }
+
+    /**
+     * Updates the set of legal moves for the move from a cell in one direction.
+     *
+     * @param row The row coordinate of the starting cell.
+     * @param col The column coordinate of the starting cell.
+     * @param dir The direction of the move.
+     */
+    private void refreshMove(int row, int col, int dir) {
+        int toRow = row + 2 * ROW_STEP[dir];
+        int toCol = col + 2 * COL_STEP[dir];
+        boolean legal = toRow >= 0 && toRow < gameboard.length && toCol >= 0 && toCol < gameboard[0].length
+                && gameboard[row][col]
+                && gameboard[row + ROW_STEP[dir]][col + COL_STEP[dir]]
+                && !gameboard[toRow][toCol];
+        int index = (row * gameboard[0].length + col) * 4 + dir;
+        if (legalMoves[index] != legal) {
+            legalMoves[index] = legal;
+            legalMoveCount += legal ? 1 : -1;
+        }
     }
 
     /**
@@ -174,27 +632,127 @@ public class SqrBoard implements PegGame {
     @Override
     @Test
     public String toString() {
-    String printboard = "";
-    for (boolean[] row : gameboard) {
-        for (boolean isPeg : row) {
-            printboard += isPeg ? "o " : ". ";
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        byte[] text = new byte[gameboard.length * (2 * cols + 1)];
+        for (int row = 0; row < gameboard.length; row++) {
+            renderRow(row, text, row * (2 * cols + 1));
         }
-        printboard += "\n";
+        return new String(text, StandardCharsets.ISO_8859_1);
     }
-    return printboard;}
 
+    /**
+     * Writes the same text as toString without building it as one string first.
+     * A Writer gets each row as a char array; other Appendables get it as a CharBuffer.
+     *
+     * @param out Where to write the board.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        char[] line = new char[2 * cols + 1];
+        CharBuffer wrapped = CharBuffer.wrap(line);
+        for (int row = 0; row < gameboard.length; row++) {
+            boolean[] pegs = gameboard[row];
+            for (int col = 0; col < cols; col++) {
+                line[2 * col] = pegs[col] ? 'o' : '.';
+                line[2 * col + 1] = ' ';
+            }
+            line[2 * cols] = '\n';
+            if (out instanceof Writer) {
+                ((Writer) out).write(line);
+            } else {
+                out.append(wrapped, 0, line.length);
+            }
+        }
+    }
+
+    /**
+     * Writes the same text as toString to a channel, as ISO-8859-1, a batch of rows at a time.
+     *
+     * @param out Where to write the board.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        int cols = gameboard.length == 0 ? 0 : gameboard[0].length;
+        int lineLength = 2 * cols + 1;
+        int rowsPerBatch = Math.max(1, Math.min(gameboard.length, TEXT_BATCH_BYTES / lineLength));
+        byte[] text = new byte[rowsPerBatch * lineLength];
+        ByteBuffer buffer = ByteBuffer.wrap(text);
+        for (int first = 0; first < gameboard.length; first += rowsPerBatch) {
+            int last = Math.min(gameboard.length, first + rowsPerBatch);
+            for (int row = first; row < last; row++) {
+                renderRow(row, text, (row - first) * lineLength);
+            }
+            buffer.clear().limit((last - first) * lineLength);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes one row of text, 'o ' or '. ' per cell and a newline, into a byte array.
+     */
+    private void renderRow(int row, byte[] text, int offset) {
+        boolean[] pegs = gameboard[row];
+        for (int col = 0; col < pegs.length; col++) {
+            text[offset++] = pegs[col] ? (byte) 'o' : (byte) '.';
+            text[offset++] = ' ';
+        }
+        text[offset] = '\n';
+    }
+
+    /**
+     * Gets the board array. It must not be changed directly: the peg count, legal
+     * moves and Zobrist keys are only kept up to date through makeMove. The array
+     * changes with every move, so other threads should read the board through
+     * snapshot() instead.
+     *
+     * @return The board, where true indicates a peg.
+     */
     public boolean[][] getGameBoard(){
         return gameboard;
     }
 
+    /**
+     * Takes an immutable snapshot of the board. Moves, undos and redos hold the same lock,
+     * so the snapshot is always a position the board was in between moves. Asking again
+     * before the next move returns the same snapshot without copying.
+     *
+     * @return The snapshot.
+     */
+    public synchronized BoardSnapshot snapshot() {
+        if (snapshot == null) {
+            snapshot = BoardSnapshot.of(gameboard);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the Zobrist key of the board, kept up to date by makeMove.
+     * Changes made directly to the array from getGameBoard() are not tracked.
+     *
+     * @return The Zobrist key.
+     */
+    public long getZobristKey() {
+        return hashes[0];
+    }
+
+    /**
+     * Gets a Zobrist key that is the same for the board and all of its rotations and reflections.
+     *
+     * @return The canonical key.
+     */
+    public long getCanonicalKey() {
+        return Zobrist.canonical(hashes);
+    }
+
             @Override
             @Test
             public int hashCode() {
-                final int prime = 31;
-                int result = 1;
-                result = prime * result + Arrays.deepHashCode(gameboard);
-                result = prime * result + ((gameState == null) ? 0 : gameState.hashCode());
-                return result;
+                // The game state follows from the pegs, so only the pegs are hashed
+                long key = hashes[0];
+                return (int) (key ^ (key >>> 32));
             }
     
             @Override
@@ -207,11 +765,7 @@ public class SqrBoard implements PegGame {
                 if (getClass() != obj.getClass())
                     return false;
                 SqrBoard other = (SqrBoard) obj;
-                if (!Arrays.deepEquals(gameboard, other.gameboard))
-                    return false;
-                if (gameState != other.gameState)
-                    return false;
-                return true;
+                return Arrays.deepEquals(gameboard, other.gameboard);
         }
 
            
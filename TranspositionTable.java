@@ -0,0 +1,141 @@
+package PegGamee;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size table of positions already known to be lost, keyed by canonical Zobrist key.
+ *
+ * Entries live in a single primitive long array, so the table never allocates after it is
+ * created and can be shared by every thread of a search without locks. Each entry packs
+ * the top 56 bits of the key together with the number of pegs of the position, which is
+ * what the eviction policies use to judge how much work an entry saves.
+ *
+ * Like any hash table keyed by Zobrist keys, two different positions may collide. With 56
+ * key bits this is rare enough to be ignored.
+ */
+public class TranspositionTable {
+
+    /**
+     * Decides which entry of a full bucket makes room for a new one.
+     */
+    public enum EvictionPolicy {
+        /** Always store the new entry, replacing a slot picked from its key. */
+        ALWAYS_REPLACE,
+        /** Replace the entry with the fewest pegs, but only if the new entry has at least as many. */
+        KEEP_LARGEST,
+        /** Always store the new entry, replacing the entry with the fewest pegs. */
+        REPLACE_SMALLEST
+    }
+
+    private static final int BUCKET_SIZE = 4;
+    private static final long PEGS_MASK = 0xFF;
+
+    private final AtomicLongArray slots;
+    private final int bucketMask;
+    private final EvictionPolicy policy;
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Constructs a table that keeps the entries with the most pegs.
+     *
+     * @param log2Entries The base-2 logarithm of the number of entries, each taking 8 bytes.
+     */
+    public TranspositionTable(int log2Entries) {
+        this(log2Entries, EvictionPolicy.KEEP_LARGEST);
+    }
+
+    /**
+     * Constructs a table.
+     *
+     * @param log2Entries The base-2 logarithm of the number of entries, each taking 8 bytes.
+     * @param policy      How to make room in a full bucket.
+     */
+    public TranspositionTable(int log2Entries, EvictionPolicy policy) {
+        if (log2Entries < 2 || log2Entries > 30) {
+            throw new IllegalArgumentException("log2Entries must be between 2 and 30");
+        }
+        this.slots = new AtomicLongArray(1 << log2Entries);
+        this.bucketMask = (1 << log2Entries) / BUCKET_SIZE - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Checks if a position was stored as lost.
+     *
+     * @param key The canonical key of the position.
+     * @return True if the position is known to be lost.
+     */
+    public boolean contains(long key) {
+        int base = bucket(key);
+        long tag = key & ~PEGS_MASK;
+        if (tag == 0) {
+            return false;
+        }
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if ((slots.getAcquire(base + i) & ~PEGS_MASK) == tag) {
+                hits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a position as lost.
+     *
+     * @param key  The canonical key of the position.
+     * @param pegs The number of pegs on the board, a measure of the work saved by a later hit.
+     */
+    public void store(long key, int pegs) {
+        int base = bucket(key);
+        long tag = key & ~PEGS_MASK;
+        long entry = tag | Math.min(pegs, (int) PEGS_MASK);
+        int victim = -1;
+        long victimPegs = Long.MAX_VALUE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            long current = slots.getAcquire(base + i);
+            if (current == 0 || (current & ~PEGS_MASK) == tag) {
+                slots.setRelease(base + i, entry);
+                return;
+            }
+            if ((current & PEGS_MASK) < victimPegs) {
+                victimPegs = current & PEGS_MASK;
+                victim = base + i;
+            }
+        }
+        switch (policy) {
+            case ALWAYS_REPLACE:
+                slots.setRelease(base + (int) (key >>> 62), entry);
+                break;
+            case KEEP_LARGEST:
+                if (pegs >= victimPegs)
+                    slots.setRelease(victim, entry);
+                break;
+            case REPLACE_SMALLEST:
+                slots.setRelease(victim, entry);
+                break;
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.setPlain(i, 0);
+        }
+        hits.reset();
+    }
+
+    /**
+     * @return The number of lookups that found a stored position.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    private int bucket(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_SIZE;
+    }
+}
@@ -0,0 +1,49 @@
+package PegGamee;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes the move masks of a batch of boards with the Vector API, one board per lane.
+ * Only loaded by BatchMoveGenerator once it has checked that jdk.incubator.vector is present.
+ */
+final class VectorMoveKernel implements BatchMoveGenerator.Kernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private final long onBoard;
+    private final long[] launch;
+    private final int[] steps;
+    private final VectorOperators.Binary[] shifts; // Per direction, the shift that lines up the jumped-over cell with the peg
+    private final int[] distances;
+
+    VectorMoveKernel(long onBoard, long[] launch, int[] steps) {
+        this.onBoard = onBoard;
+        this.launch = launch;
+        this.steps = steps;
+        this.shifts = new VectorOperators.Binary[steps.length];
+        this.distances = new int[steps.length];
+        for (int dir = 0; dir < steps.length; dir++) {
+            shifts[dir] = steps[dir] > 0 ? VectorOperators.LSHR : VectorOperators.LSHL;
+            distances[dir] = Math.abs(steps[dir]);
+        }
+    }
+
+    @Override
+    public void generate(long[] pegs, int from, int to, long[][] movers) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector p = LongVector.fromArray(SPECIES, pegs, i);
+            LongVector e = p.not().and(onBoard);
+            for (int dir = PackedMove.RIGHT; dir <= PackedMove.UP; dir++) {
+                LongVector mid = p.lanewise(shifts[dir], distances[dir]);
+                LongVector land = e.lanewise(shifts[dir], 2 * distances[dir]);
+                p.and(mid).and(land).and(launch[dir]).intoArray(movers[dir], i);
+            }
+        }
+        // The boards left over after the last full vector
+        BatchMoveGenerator.generateScalar(onBoard, launch, steps, pegs, i, to, movers);
+    }
+}
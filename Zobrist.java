@@ -0,0 +1,106 @@
+package PegGamee;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zobrist keys for a board size, one key per cell for each symmetry of the board.
+ *
+ * A board keeps one hash per symmetry: the hash of the board as it looks after that
+ * rotation or reflection. Every jump toggles three cells, so all hashes are updated in
+ * constant time. The smallest of them is the same for every board in an equivalence
+ * class and is used as the canonical key. Square boards have 8 symmetries, other
+ * rectangles have 4.
+ */
+final class Zobrist {
+
+    private static final ConcurrentHashMap<Long, Zobrist> CACHE = new ConcurrentHashMap<>();
+
+    private final int cols;
+    private final long[][] keys; // [symmetry][cell]
+
+    private Zobrist(int rows, int cols) {
+        this.cols = cols;
+        int cells = rows * cols;
+        long[] base = new long[cells];
+        SplittableRandom random = new SplittableRandom(0x9E3779B97F4A7C15L * (31L * rows + cols));
+        for (int i = 0; i < cells; i++) {
+            base[i] = random.nextLong();
+        }
+        int symmetries = rows == cols ? 8 : 4;
+        this.keys = new long[symmetries][cells];
+        for (int s = 0; s < symmetries; s++) {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    keys[s][row * cols + col] = base[transform(s, row, col, rows, cols)];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the keys for boards of the given size. Boards of the same size share their keys.
+     */
+    static Zobrist forSize(int rows, int cols) {
+        return CACHE.computeIfAbsent(((long) rows << 32) | cols, size -> new Zobrist(rows, cols));
+    }
+
+    /**
+     * Maps a cell to its index after applying one of the symmetries of the board.
+     */
+    private static int transform(int symmetry, int row, int col, int rows, int cols) {
+        int r = row, c = col;
+        if ((symmetry & 1) != 0) c = cols - 1 - c;   // Mirror left to right
+        if ((symmetry & 2) != 0) r = rows - 1 - r;   // Mirror top to bottom
+        if ((symmetry & 4) != 0) {                   // Transpose, square boards only
+            int t = r;
+            r = c;
+            c = t;
+        }
+        return r * cols + c;
+    }
+
+    /**
+     * Creates the per-symmetry hashes of a board.
+     */
+    long[] hash(boolean[][] board) {
+        long[] hashes = new long[keys.length];
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < board[row].length; col++) {
+                if (board[row][col])
+                    toggle(hashes, row * cols + col);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Updates the per-symmetry hashes for a cell gaining or losing its peg.
+     */
+    void toggle(long[] hashes, int cell) {
+        for (int s = 0; s < hashes.length; s++) {
+            hashes[s] ^= keys[s][cell];
+        }
+    }
+
+    /**
+     * Updates the per-symmetry hashes for a jump, which toggles three cells.
+     */
+    void toggle(long[] hashes, int from, int mid, int to) {
+        for (int s = 0; s < hashes.length; s++) {
+            long[] k = keys[s];
+            hashes[s] ^= k[from] ^ k[mid] ^ k[to];
+        }
+    }
+
+    /**
+     * Gets the key shared by a board and all of its rotations and reflections.
+     */
+    static long canonical(long[] hashes) {
+        long min = hashes[0];
+        for (int s = 1; s < hashes.length; s++) {
+            min = Math.min(min, hashes[s]);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,108 @@
+package PegGamee;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Move generation for a batch of independent boards: BatchMoveGenerator with and without
+ * the Vector API against SqrBoard one board at a time. Every benchmark counts the legal
+ * moves of each board, and scores are in boards per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class BatchMoveBenchmark {
+
+    private static final int BATCH = 4096;
+
+    @Param({ "5", "7", "8" })
+    public int size;
+
+    @Param({ "0.3", "0.6", "0.9" })
+    public double density;
+
+    private SqrBoard[] sqrBoards;
+    private long[] pegs;
+    private long[][] movers;
+    private BatchMoveGenerator vector;
+    private BatchMoveGenerator scalar;
+    private int[] moves;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sqrBoards = new SqrBoard[BATCH];
+        pegs = new long[BATCH];
+        movers = BatchMoveGenerator.newMovers(BATCH);
+        vector = new BatchMoveGenerator(size, size);
+        scalar = new BatchMoveGenerator(size, size, false);
+        moves = new int[4 * size * size];
+        SplittableRandom random = new SplittableRandom(31L * size + Double.hashCode(density));
+        for (int i = 0; i < BATCH; i++) {
+            boolean[][] board = BenchmarkBoards.random(size, density, random);
+            sqrBoards[i] = new SqrBoard(board);
+            pegs[i] = vector.pack(board);
+        }
+        if (!vector.isVectorized()) {
+            System.err.println("Vector API not available, the vector benchmark runs the scalar path");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long sqrBoardPerBoard() {
+        long total = 0;
+        for (SqrBoard board : sqrBoards) {
+            total += board.getPossibleMoves().size();
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long sqrBoardPerBoardPacked() {
+        long total = 0;
+        for (SqrBoard board : sqrBoards) {
+            total += board.getPossibleMoves(moves);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long batchScalar() {
+        scalar.generate(pegs, BATCH, movers);
+        return countMoves();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long batchVector() {
+        vector.generate(pegs, BATCH, movers);
+        return countMoves();
+    }
+
+    private long countMoves() {
+        long total = 0;
+        for (int i = 0; i < BATCH; i++) {
+            total += BatchMoveGenerator.getMoveCount(movers, i);
+        }
+        return total;
+    }
+}
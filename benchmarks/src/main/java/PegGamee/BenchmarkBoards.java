@@ -0,0 +1,43 @@
+package PegGamee;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible boards for the benchmarks.
+ */
+final class BenchmarkBoards {
+
+    private BenchmarkBoards() {
+    }
+
+    /**
+     * Creates a square board with each cell holding a peg with the given probability.
+     * The same size and density always give the same board.
+     *
+     * @param size    The number of rows and columns.
+     * @param density The probability of a cell holding a peg.
+     * @return The board, where true indicates a peg.
+     */
+    static boolean[][] random(int size, double density) {
+        return random(size, density, new SplittableRandom(31L * size + Double.hashCode(density)));
+    }
+
+    /**
+     * Creates a square board with each cell holding a peg with the given probability,
+     * drawing from a shared generator so that a series of boards differ from each other.
+     *
+     * @param size    The number of rows and columns.
+     * @param density The probability of a cell holding a peg.
+     * @param random  Where the cells come from.
+     * @return The board, where true indicates a peg.
+     */
+    static boolean[][] random(int size, double density, SplittableRandom random) {
+        boolean[][] board = new boolean[size][size];
+        for (boolean[] row : board) {
+            for (int col = 0; col < size; col++) {
+                row[col] = random.nextDouble() < density;
+            }
+        }
+        return board;
+    }
+}
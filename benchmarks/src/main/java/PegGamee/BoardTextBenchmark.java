@@ -0,0 +1,79 @@
+package PegGamee;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SqrBoard.toString and writeTo, up to 2000x2000.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardTextBenchmark {
+
+    @Param({ "5", "7", "50", "200", "1000", "2000" })
+    public int size;
+
+    @Param({ "0.3", "0.9" })
+    public double density;
+
+    private SqrBoard sqrBoard;
+
+    // Discards everything, so only rendering is measured
+    private final WritableByteChannel sink = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sqrBoard = new SqrBoard(BenchmarkBoards.random(size, density));
+    }
+
+    @Benchmark
+    public String boardToString() {
+        return sqrBoard.toString();
+    }
+
+    @Benchmark
+    public void boardToChannel() throws IOException {
+        sqrBoard.writeTo(sink);
+    }
+
+    @Benchmark
+    public void boardToWriter() throws IOException {
+        sqrBoard.writeTo(Writer.nullWriter());
+    }
+}
@@ -0,0 +1,90 @@
+package PegGamee;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving boards through the headless FileUtil methods, in the text and
+ * binary formats. Files of a megabyte or more are loaded through a memory mapping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUtilBenchmark {
+
+    @Param({ "5", "7", "50", "200", "1000", "2000" })
+    public int size;
+
+    @Param({ "0.3", "0.9" })
+    public double density;
+
+    private boolean[][] board;
+    private byte[] text;
+    private byte[] binary;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        board = BenchmarkBoards.random(size, density);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileUtil.saveGameBoard(out, board);
+        text = out.toByteArray();
+        out.reset();
+        FileUtil.saveGameBoardBinary(out, board, null);
+        binary = out.toByteArray();
+        file = Files.createTempFile("board", ".txt");
+        Files.write(file, text);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean[][] loadFromStream() throws IOException {
+        return FileUtil.loadGameBoard(new ByteArrayInputStream(text));
+    }
+
+    @Benchmark
+    public boolean[][] loadFromPath() throws IOException {
+        return FileUtil.loadGameBoard(file);
+    }
+
+    @Benchmark
+    public boolean[][] loadBinaryFromStream() throws IOException {
+        return FileUtil.loadGameBoard(new ByteArrayInputStream(binary));
+    }
+
+    @Benchmark
+    public void saveToStream() throws IOException {
+        FileUtil.saveGameBoard(OutputStream.nullOutputStream(), board);
+    }
+
+    @Benchmark
+    public void saveBinaryToStream() throws IOException {
+        FileUtil.saveGameBoardBinary(OutputStream.nullOutputStream(), board, null);
+    }
+}
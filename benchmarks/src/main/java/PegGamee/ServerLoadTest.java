@@ -0,0 +1,105 @@
+package PegGamee;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test for GameServer. Starts the given number of games on a running server, then
+ * keeps the given number of move requests in flight, each a legal move in a random game,
+ * and reports the client-side latency of every move along with the server's own figures.
+ *
+ * Usage: {@code java -cp benchmarks.jar PegGamee.ServerLoadTest [url] [games] [concurrent requests] [seconds]}
+ */
+public class ServerLoadTest {
+
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+    private static final Pattern ROWS = Pattern.compile("\"board\":\\[(.*)]");
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<Long> ids = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            String body = client.send(HttpRequest.newBuilder(URI.create(url + "/games?size=7"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString()).body();
+            Matcher id = ID.matcher(body);
+            if (!id.find())
+                throw new IllegalStateException("Unexpected response: " + body);
+            ids.add(Long.parseLong(id.group(1)));
+        }
+        System.err.println("Started " + games + " games");
+
+        LatencyHistogram latency = new LatencyHistogram();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        SplittableRandom random = new SplittableRandom();
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long id = ids.get(random.nextInt(ids.size()));
+            client.sendAsync(HttpRequest.newBuilder(URI.create(url + "/games/" + id)).GET().build(),
+                             HttpResponse.BodyHandlers.ofString())
+                  .thenCompose(state -> {
+                      String move = pickMove(state.body());
+                      if (move == null) {
+                          // Finished game: take back its last move so it can go on
+                          return client.sendAsync(HttpRequest.newBuilder(URI.create(url + "/games/" + id + "/undo"))
+                                  .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+                      }
+                      long start = System.nanoTime();
+                      return client.sendAsync(HttpRequest.newBuilder(URI.create(url + "/games/" + id + "/moves"))
+                              .POST(HttpRequest.BodyPublishers.ofString(move)).build(), HttpResponse.BodyHandlers.discarding())
+                          .thenApply(response -> {
+                              latency.record(System.nanoTime() - start);
+                              return response;
+                          });
+                  })
+                  .exceptionally(e -> null)
+                  .whenComplete((response, e) -> inFlight.release());
+        }
+        inFlight.acquire(concurrency);
+
+        EngineMetrics.LatencySummary summary = new EngineMetrics.LatencySummary(latency);
+        System.out.println("Client move latency: " + summary);
+        System.out.println("Server: " + client.send(HttpRequest.newBuilder(URI.create(url + "/stats")).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    /**
+     * Finds the first legal jump on a board returned by the server.
+     *
+     * @return The move as "fromRow fromCol toRow toCol", or null if there is none.
+     */
+    private static String pickMove(String json) {
+        Matcher rows = ROWS.matcher(json);
+        if (!rows.find())
+            return null;
+        String[] board = rows.group(1).replace("\"", "").split(",");
+        int[][] steps = { { 0, 1 }, { 0, -1 }, { 1, 0 }, { -1, 0 } };
+        for (int r = 0; r < board.length; r++) {
+            for (int c = 0; c < board[r].length(); c++) {
+                if (board[r].charAt(c) != 'o')
+                    continue;
+                for (int[] step : steps) {
+                    int overRow = r + step[0], overCol = c + step[1];
+                    int toRow = overRow + step[0], toCol = overCol + step[1];
+                    if (toRow >= 0 && toRow < board.length && toCol >= 0 && toCol < board[toRow].length()
+                            && board[overRow].charAt(overCol) == 'o' && board[toRow].charAt(toCol) == '.')
+                        return r + " " + c + " " + toRow + " " + toCol;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+package PegGamee;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Move generation, move execution and game state checks on SqrBoard and BitBoard.
+ * Each move benchmark makes a move and takes it back, so the board is the same for every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqrBoardBenchmark {
+
+    @Param({ "5", "7", "50", "200", "1000" })
+    public int size;
+
+    @Param({ "0.3", "0.6", "0.9" })
+    public double density;
+
+    private SqrBoard sqrBoard;
+    private BitBoard bitBoard;
+    private int[] moves;
+    private int moveCount;
+    private Move move;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean[][] board = BenchmarkBoards.random(size, density);
+        sqrBoard = new SqrBoard(board);
+        bitBoard = new BitBoard(board);
+        moves = new int[4 * size * size];
+        moveCount = sqrBoard.getPossibleMoves(moves);
+        move = moveCount == 0 ? null : PackedMove.toMove(moves[0], size);
+    }
+
+    @Benchmark
+    public Collection<Move> getPossibleMoves() {
+        return sqrBoard.getPossibleMoves();
+    }
+
+    @Benchmark
+    public int getPossibleMovesPacked() {
+        return sqrBoard.getPossibleMoves(moves);
+    }
+
+    @Benchmark
+    public int bitBoardGetPossibleMovesPacked() {
+        return bitBoard.getPossibleMoves(moves);
+    }
+
+    @Benchmark
+    public GameState getGameState() {
+        return sqrBoard.getGameState();
+    }
+
+    @Benchmark
+    public GameState makeMove() throws PegGameException {
+        if (move == null) {
+            return sqrBoard.getGameState();
+        }
+        sqrBoard.makeMove(move);
+        sqrBoard.undoMove();
+        return sqrBoard.getGameState();
+    }
+
+    @Benchmark
+    public GameState makeMovePacked() throws PegGameException {
+        if (moveCount == 0) {
+            return sqrBoard.getGameState();
+        }
+        int m = moves[next++ % moveCount];
+        sqrBoard.makeMove(m);
+        sqrBoard.undoMove(m);
+        return sqrBoard.getGameState();
+    }
+
+    @Benchmark
+    public BitBoard bitBoardMakeMovePacked() {
+        if (moveCount != 0) {
+            int m = moves[next++ % moveCount];
+            bitBoard.makeMove(m);
+            bitBoard.undoMove(m);
+        }
+        return bitBoard;
+    }
+}